@@ -34,6 +34,12 @@ public class Task {
     
     private long executionTimeMs;
 
+    /** Copy with the same property values; the payload map is shared, it is never modified in place. */
+    public Task copy() {
+        return new Task(id, type, status, workerId, payload, result, error, retryCount, maxRetries, priority,
+                createdAt, startedAt, completedAt, executionTimeMs);
+    }
+
     public enum TaskStatus {
         PENDING, PROCESSING, COMPLETED, FAILED, RETRYING, PAUSED, CANCELLED
     }
@@ -1,5 +1,8 @@
 package com.taskqueue;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskqueue.codec.FormatDetectingTaskCodec;
+import com.taskqueue.codec.TaskCodec;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -11,6 +14,7 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 @SpringBootApplication
 @EnableKafka
@@ -19,27 +23,52 @@ import java.util.concurrent.Executor;
 @EnableGlobalMethodSecurity(prePostEnabled = true)
 public class TaskQueueApplication {
 
+    public static final String VIRTUAL_EXECUTION = "virtual";
+
     public static void main(String[] args) {
         SpringApplication.run(TaskQueueApplication.class, args);
     }
 
     /**
-     * Dedicated thread pool for async task execution in TaskWorker.
+     * Dedicated executor for task execution in TaskWorker.
      * Keeps Kafka consumer threads free to immediately pull the next message.
+     *
+     * platform (default): ThreadPoolTaskExecutor of max-pool-size threads — TaskDispatcher holds
+     * waiting tasks in priority order and never submits more than max-pool-size at once. A slot
+     * frees up as a task ends, a moment before its thread is back waiting for work, so the pool
+     * has a queue of max-pool-size: the next task waits there for that moment rather than being
+     * rejected. Threads are started on demand and retire after the keep-alive when idle.
+     * virtual: one virtual thread per task. Processors that block on SMTP/HTTP/DB park instead
+     * of holding a platform thread; TaskDispatcher's single dispatcher thread starts a task only
+     * while fewer than task.worker.virtual.max-concurrency are running, so that slot count, not a
+     * thread count, caps concurrency per node.
      */
     @Bean("taskExecutor")
     public Executor taskExecutor(
-            @Value("${task.worker.core-pool-size:5}") int corePoolSize,
-            @Value("${task.worker.max-pool-size:20}") int maxPoolSize,
-            @Value("${task.worker.queue-capacity:100}") int queueCapacity) {
+            @Value("${task.worker.execution-mode:platform}") String executionMode,
+            @Value("${task.worker.max-pool-size:20}") int maxPoolSize) {
+        if (VIRTUAL_EXECUTION.equalsIgnoreCase(executionMode)) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("task-worker-", 0).factory());
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(corePoolSize);
+        executor.setCorePoolSize(maxPoolSize);
         executor.setMaxPoolSize(maxPoolSize);
-        executor.setQueueCapacity(queueCapacity);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setQueueCapacity(maxPoolSize);
         executor.setThreadNamePrefix("task-worker-");
         executor.setWaitForTasksToCompleteOnShutdown(true);
         executor.setAwaitTerminationSeconds(30);
         executor.initialize();
         return executor;
     }
+
+    /**
+     * Codec for Redis task values and Kafka task/retry messages — json (default) or binary.
+     * Reads both formats either way, so switch to binary only once every node runs this version.
+     * WebSocket pushes stay JSON for the dashboard.
+     */
+    @Bean
+    public TaskCodec taskCodec(@Value("${task.codec:json}") String format, ObjectMapper objectMapper) {
+        return FormatDetectingTaskCodec.forFormat(format, objectMapper);
+    }
 }
@@ -0,0 +1,348 @@
+package com.taskqueue.codec;
+
+import com.taskqueue.Task;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-written binary Task format. Layout of version 1:
+ *
+ * <pre>
+ *   byte     version (0x01)
+ *   byte     status name length n, then n ASCII bytes   } fixed header — read in place by the
+ *   int64    executionTimeMs, big-endian                } scripts from legacy string task values
+ *   byte     null flags (type, workerId, result, error, createdAt, startedAt, completedAt, payload)
+ *   string   id, then each non-null string field
+ *   varint   retryCount, maxRetries
+ *   byte     priority ordinal (-1 = null)
+ *   varint   epoch second + varint nano, per non-null timestamp (LocalDateTime read as UTC)
+ *   value    payload map — tagged values, see the TAG_ constants
+ * </pre>
+ *
+ * Strings are a varint byte length followed by UTF-8; integers are zigzag varints. Timestamps
+ * keep full precision, unlike the JSON form which is formatted to the second. A payload encoded
+ * on its own is the version byte followed by the payload value.
+ */
+public class BinaryTaskCodec implements TaskCodec {
+
+    public static final byte VERSION_1 = 0x01;
+
+    private static final int HAS_TYPE         = 1;
+    private static final int HAS_WORKER_ID    = 1 << 1;
+    private static final int HAS_RESULT       = 1 << 2;
+    private static final int HAS_ERROR        = 1 << 3;
+    private static final int HAS_CREATED_AT   = 1 << 4;
+    private static final int HAS_STARTED_AT   = 1 << 5;
+    private static final int HAS_COMPLETED_AT = 1 << 6;
+    private static final int HAS_PAYLOAD      = 1 << 7;
+
+    private static final byte TAG_NULL        = 0;
+    private static final byte TAG_TRUE        = 1;
+    private static final byte TAG_FALSE       = 2;
+    private static final byte TAG_INTEGER     = 3;
+    private static final byte TAG_DOUBLE      = 4;
+    private static final byte TAG_STRING      = 5;
+    private static final byte TAG_LIST        = 6;
+    private static final byte TAG_MAP         = 7;
+    private static final byte TAG_BIG_INTEGER = 8;
+    private static final byte TAG_BIG_DECIMAL = 9;
+
+    private static final Task.TaskStatus[] STATUSES  = Task.TaskStatus.values();
+    private static final Task.Priority[]   PRIORITIES = Task.Priority.values();
+
+    @Override
+    public byte[] encode(Task task) throws IOException {
+        Writer out = new Writer();
+        out.writeByte(VERSION_1);
+        byte[] status = task.getStatus() != null ? task.getStatus().name().getBytes(StandardCharsets.US_ASCII) : new byte[0];
+        out.writeByte(status.length);
+        out.writeBytes(status);
+        out.writeLong(task.getExecutionTimeMs());
+
+        int flags = (task.getType() != null ? HAS_TYPE : 0)
+                | (task.getWorkerId() != null ? HAS_WORKER_ID : 0)
+                | (task.getResult() != null ? HAS_RESULT : 0)
+                | (task.getError() != null ? HAS_ERROR : 0)
+                | (task.getCreatedAt() != null ? HAS_CREATED_AT : 0)
+                | (task.getStartedAt() != null ? HAS_STARTED_AT : 0)
+                | (task.getCompletedAt() != null ? HAS_COMPLETED_AT : 0)
+                | (task.getPayload() != null ? HAS_PAYLOAD : 0);
+        out.writeByte(flags);
+
+        out.writeString(task.getId() != null ? task.getId() : "");
+        if ((flags & HAS_TYPE) != 0)      out.writeString(task.getType());
+        if ((flags & HAS_WORKER_ID) != 0) out.writeString(task.getWorkerId());
+        if ((flags & HAS_RESULT) != 0)    out.writeString(task.getResult());
+        if ((flags & HAS_ERROR) != 0)     out.writeString(task.getError());
+        out.writeVarLong(task.getRetryCount());
+        out.writeVarLong(task.getMaxRetries());
+        out.writeByte(task.getPriority() != null ? task.getPriority().ordinal() : -1);
+        if ((flags & HAS_CREATED_AT) != 0)   out.writeTimestamp(task.getCreatedAt());
+        if ((flags & HAS_STARTED_AT) != 0)   out.writeTimestamp(task.getStartedAt());
+        if ((flags & HAS_COMPLETED_AT) != 0) out.writeTimestamp(task.getCompletedAt());
+        if ((flags & HAS_PAYLOAD) != 0)      out.writeValue(task.getPayload());
+        return out.toByteArray();
+    }
+
+    @Override
+    public Task decode(byte[] bytes) throws IOException {
+        try {
+            Reader in = new Reader(bytes);
+            int version = in.readByte();
+            if (version != VERSION_1) {
+                throw new IOException("Unsupported task format version: " + version);
+            }
+            Task task = new Task();
+            int statusLength = in.readByte() & 0xFF;
+            if (statusLength > 0) {
+                task.setStatus(statusOf(new String(in.readBytes(statusLength), StandardCharsets.US_ASCII)));
+            }
+            task.setExecutionTimeMs(in.readLong());
+
+            int flags = in.readByte() & 0xFF;
+            task.setId(in.readString());
+            if ((flags & HAS_TYPE) != 0)      task.setType(in.readString());
+            if ((flags & HAS_WORKER_ID) != 0) task.setWorkerId(in.readString());
+            if ((flags & HAS_RESULT) != 0)    task.setResult(in.readString());
+            if ((flags & HAS_ERROR) != 0)     task.setError(in.readString());
+            task.setRetryCount((int) in.readVarLong());
+            task.setMaxRetries((int) in.readVarLong());
+            int priority = in.readByte();
+            if (priority >= 0) task.setPriority(PRIORITIES[priority]);
+            if ((flags & HAS_CREATED_AT) != 0)   task.setCreatedAt(in.readTimestamp());
+            if ((flags & HAS_STARTED_AT) != 0)   task.setStartedAt(in.readTimestamp());
+            if ((flags & HAS_COMPLETED_AT) != 0) task.setCompletedAt(in.readTimestamp());
+            if ((flags & HAS_PAYLOAD) != 0) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> payload = (Map<String, Object>) in.readValue();
+                task.setPayload(payload);
+            }
+            return task;
+        } catch (IndexOutOfBoundsException | ClassCastException e) {
+            throw new IOException("Malformed binary task", e);
+        }
+    }
+
+    @Override
+    public byte[] encodePayload(Map<String, Object> payload) throws IOException {
+        Writer out = new Writer();
+        out.writeByte(VERSION_1);
+        out.writeValue(payload);
+        return out.toByteArray();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> decodePayload(byte[] bytes) throws IOException {
+        try {
+            Reader in = new Reader(bytes);
+            int version = in.readByte();
+            if (version != VERSION_1) {
+                throw new IOException("Unsupported payload format version: " + version);
+            }
+            return (Map<String, Object>) in.readValue();
+        } catch (IndexOutOfBoundsException | ClassCastException e) {
+            throw new IOException("Malformed binary payload", e);
+        }
+    }
+
+    private static Task.TaskStatus statusOf(String name) throws IOException {
+        for (Task.TaskStatus status : STATUSES) {
+            if (status.name().equals(name)) return status;
+        }
+        throw new IOException("Unknown task status: " + name);
+    }
+
+    private static final class Writer {
+        private byte[] buf = new byte[256];
+        private int size;
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[size++] = (byte) b;
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeLong(long v) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buf[size++] = (byte) (v >>> shift);
+            }
+        }
+
+        void writeVarLong(long v) {
+            long zigzag = (v << 1) ^ (v >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                writeByte((int) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            writeByte((int) zigzag);
+        }
+
+        void writeString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            writeBytes(bytes);
+        }
+
+        void writeTimestamp(LocalDateTime time) {
+            writeVarLong(time.toEpochSecond(ZoneOffset.UTC));
+            writeVarLong(time.getNano());
+        }
+
+        void writeValue(Object value) throws IOException {
+            if (value == null) {
+                writeByte(TAG_NULL);
+            } else if (value instanceof Boolean) {
+                writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+            } else if (value instanceof Integer || value instanceof Long
+                    || value instanceof Short || value instanceof Byte) {
+                writeByte(TAG_INTEGER);
+                writeVarLong(((Number) value).longValue());
+            } else if (value instanceof Double || value instanceof Float) {
+                writeByte(TAG_DOUBLE);
+                writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+            } else if (value instanceof BigInteger) {
+                writeByte(TAG_BIG_INTEGER);
+                writeString(value.toString());
+            } else if (value instanceof BigDecimal) {
+                writeByte(TAG_BIG_DECIMAL);
+                writeString(value.toString());
+            } else if (value instanceof CharSequence) {
+                writeByte(TAG_STRING);
+                writeString(value.toString());
+            } else if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                writeByte(TAG_LIST);
+                writeVarLong(list.size());
+                for (Object element : list) {
+                    writeValue(element);
+                }
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                writeByte(TAG_MAP);
+                writeVarLong(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeString(String.valueOf(entry.getKey()));
+                    writeValue(entry.getValue());
+                }
+            } else {
+                throw new IOException("Unsupported payload value type: " + value.getClass().getName());
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buf;
+        private int pos;
+
+        Reader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        int readByte() {
+            if (pos >= buf.length) throw new IndexOutOfBoundsException("Truncated task at " + pos);
+            return buf[pos++];
+        }
+
+        byte[] readBytes(int length) {
+            if (length < 0 || pos + length > buf.length) throw new IndexOutOfBoundsException("Truncated task at " + pos);
+            byte[] bytes = Arrays.copyOfRange(buf, pos, pos + length);
+            pos += length;
+            return bytes;
+        }
+
+        long readLong() {
+            long v = 0;
+            for (int i = 0; i < 8; i++) {
+                v = (v << 8) | (readByte() & 0xFF);
+            }
+            return v;
+        }
+
+        long readVarLong() {
+            long zigzag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) break;
+            }
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        String readString() {
+            int length = (int) readVarLong();
+            if (length < 0 || pos + length > buf.length) throw new IndexOutOfBoundsException("Truncated task at " + pos);
+            String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+
+        LocalDateTime readTimestamp() {
+            long seconds = readVarLong();
+            return LocalDateTime.ofEpochSecond(seconds, (int) readVarLong(), ZoneOffset.UTC);
+        }
+
+        Object readValue() throws IOException {
+            int tag = readByte();
+            switch (tag) {
+                case TAG_NULL:  return null;
+                case TAG_TRUE:  return Boolean.TRUE;
+                case TAG_FALSE: return Boolean.FALSE;
+                case TAG_INTEGER: {
+                    // Same boxing Jackson uses for untyped maps: Integer when it fits
+                    long v = readVarLong();
+                    return v == (int) v ? (Object) (int) v : (Object) v;
+                }
+                case TAG_DOUBLE:      return Double.longBitsToDouble(readLong());
+                case TAG_STRING:      return readString();
+                case TAG_BIG_INTEGER: return new BigInteger(readString());
+                case TAG_BIG_DECIMAL: return new BigDecimal(readString());
+                case TAG_LIST: {
+                    int n = (int) readVarLong();
+                    List<Object> list = new ArrayList<>(Math.min(n, 1024));
+                    for (int i = 0; i < n; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                }
+                case TAG_MAP: {
+                    int n = (int) readVarLong();
+                    Map<String, Object> map = new LinkedHashMap<>();
+                    for (int i = 0; i < n; i++) {
+                        String key = readString();
+                        map.put(key, readValue());
+                    }
+                    return map;
+                }
+                default:
+                    throw new IOException("Unknown payload value tag: " + tag);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.taskqueue.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskqueue.Task;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Encodes with the configured codec and decodes by the first byte: JSON always starts with '{',
+ * binary with its version byte. Lets a rolling deploy switch task.codec in either direction
+ * while Redis and the topics still hold values in the other format.
+ */
+public class FormatDetectingTaskCodec implements TaskCodec {
+
+    public static final String JSON   = "json";
+    public static final String BINARY = "binary";
+
+    private final TaskCodec writer;
+    private final JsonTaskCodec json;
+    private final BinaryTaskCodec binary;
+
+    public FormatDetectingTaskCodec(TaskCodec writer, JsonTaskCodec json, BinaryTaskCodec binary) {
+        this.writer = writer;
+        this.json   = json;
+        this.binary = binary;
+    }
+
+    /** Writes the named format (json | binary), reads both. */
+    public static TaskCodec forFormat(String format, ObjectMapper objectMapper) {
+        JsonTaskCodec json = new JsonTaskCodec(objectMapper);
+        BinaryTaskCodec binary = new BinaryTaskCodec();
+        if (BINARY.equalsIgnoreCase(format)) return new FormatDetectingTaskCodec(binary, json, binary);
+        if (JSON.equalsIgnoreCase(format))   return new FormatDetectingTaskCodec(json, json, binary);
+        throw new IllegalArgumentException("Unknown task.codec: " + format + " (expected json or binary)");
+    }
+
+    @Override
+    public byte[] encode(Task task) throws IOException {
+        return writer.encode(task);
+    }
+
+    @Override
+    public Task decode(byte[] bytes) throws IOException {
+        if (bytes.length > 0 && bytes[0] == BinaryTaskCodec.VERSION_1) {
+            return binary.decode(bytes);
+        }
+        return json.decode(bytes);
+    }
+
+    @Override
+    public byte[] encodePayload(Map<String, Object> payload) throws IOException {
+        return writer.encodePayload(payload);
+    }
+
+    @Override
+    public Map<String, Object> decodePayload(byte[] bytes) throws IOException {
+        if (bytes.length > 0 && bytes[0] == BinaryTaskCodec.VERSION_1) {
+            return binary.decodePayload(bytes);
+        }
+        return json.decodePayload(bytes);
+    }
+}
@@ -0,0 +1,40 @@
+package com.taskqueue.codec;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskqueue.Task;
+
+import java.io.IOException;
+import java.util.Map;
+
+/** The original text format — UTF-8 JSON through the application ObjectMapper. */
+public class JsonTaskCodec implements TaskCodec {
+
+    private static final TypeReference<Map<String, Object>> PAYLOAD_TYPE = new TypeReference<Map<String, Object>>() {};
+
+    private final ObjectMapper objectMapper;
+
+    public JsonTaskCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public byte[] encode(Task task) throws IOException {
+        return objectMapper.writeValueAsBytes(task);
+    }
+
+    @Override
+    public Task decode(byte[] bytes) throws IOException {
+        return objectMapper.readValue(bytes, Task.class);
+    }
+
+    @Override
+    public byte[] encodePayload(Map<String, Object> payload) throws IOException {
+        return objectMapper.writeValueAsBytes(payload);
+    }
+
+    @Override
+    public Map<String, Object> decodePayload(byte[] bytes) throws IOException {
+        return objectMapper.readValue(bytes, PAYLOAD_TYPE);
+    }
+}
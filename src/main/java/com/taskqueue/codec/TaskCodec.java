@@ -0,0 +1,23 @@
+package com.taskqueue.codec;
+
+import com.taskqueue.Task;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Serialized form of a Task on every internal hop — the Kafka task and retry messages, and the
+ * payload field of the task:{id} hash (plus legacy whole-task string values). The implementation
+ * is chosen by task.codec (json | binary); whichever is configured, decode accepts both formats
+ * so values written before a switch stay readable.
+ */
+public interface TaskCodec {
+
+    byte[] encode(Task task) throws IOException;
+
+    Task decode(byte[] bytes) throws IOException;
+
+    byte[] encodePayload(Map<String, Object> payload) throws IOException;
+
+    Map<String, Object> decodePayload(byte[] bytes) throws IOException;
+}
@@ -4,6 +4,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
@@ -44,8 +45,12 @@ public class SecurityConfig {
             .authorizeRequests()
                 // Public endpoints
                 .antMatchers("/auth/**", "/health", "/").permitAll()
+                // Scraped by Prometheus without a token — expose on an internal management port in production
+                .antMatchers("/actuator/health", "/actuator/prometheus").permitAll()
                 // Admin-only endpoints (also enforced at method level via @PreAuthorize)
                 .antMatchers("/tasks/*/delete").hasRole("ADMIN")
+                .antMatchers(HttpMethod.PUT, "/tasks/rate-limits/*").hasRole("ADMIN")
+                .antMatchers(HttpMethod.DELETE, "/tasks/rate-limits/*").hasRole("ADMIN")
                 // All other endpoints require authentication
                 .anyRequest().authenticated()
             .and()
@@ -0,0 +1,35 @@
+package com.taskqueue.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Async request handling, used by the streaming export (GET /tasks/export). Streams run on a
+ * small pool of their own — never on the taskExecutor workers — and further exports wait for
+ * a slot. The timeout defaults to none, since a multi-million row export can take minutes.
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    @Value("${task.export.max-concurrent:4}")
+    private int maxConcurrent;
+
+    // 0 = no timeout
+    @Value("${task.export.timeout-ms:0}")
+    private long timeoutMs;
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setThreadNamePrefix("task-export-");
+        executor.setDaemon(true);
+        executor.initialize();
+        configurer.setTaskExecutor(executor);
+        configurer.setDefaultTimeout(timeoutMs);
+    }
+}
@@ -14,6 +14,8 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.enableSimpleBroker("/topic");
         config.setApplicationDestinationPrefixes("/app");
+        // Task update batches carry per-destination sequence numbers — deliver them in order
+        config.setPreservePublishOrder(true);
     }
 
     @Override
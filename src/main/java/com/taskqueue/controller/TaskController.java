@@ -1,16 +1,36 @@
 package com.taskqueue.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.taskqueue.Task;
+import com.taskqueue.model.AckMode;
+import com.taskqueue.model.BatchSubmissionResult;
+import com.taskqueue.model.TaskField;
+import com.taskqueue.model.TaskPage;
 import com.taskqueue.service.TaskService;
+import com.taskqueue.service.TaskUpdatePublisher;
+import com.taskqueue.worker.TaskRateLimiter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 // @CrossOrigin removed — CORS is handled centrally in SecurityConfig.corsConfigurationSource()
 // Previously had @CrossOrigin(origins = "*") which bypassed the configured allowed-origins
@@ -21,6 +41,23 @@ import java.util.Map;
 public class TaskController {
 
     private final TaskService taskService;
+    private final TaskUpdatePublisher publisher;
+    private final ObjectMapper objectMapper;
+    private final TaskRateLimiter rateLimiter;
+
+    private static final Set<TaskField> ALL_FIELDS = EnumSet.allOf(TaskField.class);
+    private static final Set<TaskField> ACTION_FIELDS =
+            EnumSet.of(TaskField.TYPE, TaskField.STATUS, TaskField.RETRY_COUNT, TaskField.ERROR);
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final String IDEMPOTENCY_HEADER = "Idempotency-Key";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
+    @Value("${task.submit.max-batch-size:10000}")
+    private int maxBatchSize;
+
+    // Single submits only — a batch waits for the broker unless it asks for ?ack=outbox
+    @Value("${task.submit.default-ack:outbox}")
+    private String defaultAck = "outbox";
 
     @GetMapping("/")
     public ResponseEntity<Map<String, Object>> getRoot() {
@@ -28,45 +65,111 @@ public class TaskController {
         response.put("message", "Distributed Task Queue System");
         response.put("version", "1.0.0");
         response.put("endpoints", Map.of(
-            "submit_task",   "POST /tasks",
-            "get_all_tasks", "GET /tasks?page=0&size=20",
+            "submit_task",   "POST /tasks?ack=outbox|broker",
+            "submit_batch",  "POST /tasks/batch?ack=outbox|broker",
+            "get_all_tasks", "GET /tasks?page=0&size=20&fields=id,status,type",
             "get_task",      "GET /tasks/{taskId}",
+            "get_by_status", "GET /tasks/status/{status}?cursor=&size=50",
+            "export",        "GET /tasks/export?status=&type=&from=&to=&fields=",
             "get_workers",   "GET /tasks/workers",
-            "get_statistics","GET /tasks/statistics"
+            "get_statistics","GET /tasks/statistics",
+            "get_cache",     "GET /tasks/cache"
         ));
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Submits one task. ack=outbox (default) responds once the task and its outbox entry are
+     * in Redis; ack=broker also waits for the Kafka ack, and responds 202 if it does not come —
+     * the task is stored and the outbox relay publishes it. An Idempotency-Key header (or
+     * idempotencyKey field) makes retries safe: a repeat within the task TTL returns the
+     * original task instead of creating and running another. Keys are scoped to the caller;
+     * 409 if the original has been deleted.
+     */
     @PostMapping
-    public ResponseEntity<Task> submitTask(@RequestBody TaskSubmissionRequest request) {
+    public ResponseEntity<Task> submitTask(@RequestBody TaskSubmissionRequest request,
+                                           @RequestHeader(value = IDEMPOTENCY_HEADER, required = false) String idempotencyHeader,
+                                           @RequestParam(value = "ack", required = false) String ackParam,
+                                           Principal principal) {
+        String idempotencyKey = idempotencyHeader != null ? idempotencyHeader : request.getIdempotencyKey();
+        if (idempotencyKey != null && (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            return ResponseEntity.badRequest().build();
+        }
+        AckMode ack = ackMode(ackParam != null ? ackParam : defaultAck);
+        if (ack == null) {
+            return ResponseEntity.badRequest().build();
+        }
         try {
-            Task task = taskService.submitTask(
-                request.getType(),
-                request.getPayload(),
-                request.getPriority()
-            );
-            return ResponseEntity.ok(task);
+            Task task = taskService.newTask(request.getType(), request.getPayload(), request.getPriority());
+            Task stored = taskService.submitTask(task, scoped(idempotencyKey, principal), ack);
+            if (stored == null) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
+            if (stored.getId().equals(task.getId())) {
+                publisher.publish(stored, ALL_FIELDS);
+            }
+            return ResponseEntity.ok(stored);
+        } catch (TaskService.EnqueuePendingException e) {
+            publisher.publish(e.getTask(), ALL_FIELDS);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(e.getTask());
         } catch (Exception e) {
             log.error("Failed to submit task", e);
             return ResponseEntity.badRequest().build();
         }
     }
 
+    /**
+     * Bulk submit. Redis writes go out in one pipeline and Kafka sends in per-topic producer
+     * batches; the response lists an id or error per item, in request order. With ack=broker
+     * (the default) it comes after the broker acks, and items without one are marked pending;
+     * ack=outbox responds after the Redis write.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchSubmissionResult>> submitTasks(@RequestBody List<TaskSubmissionRequest> requests,
+                                                                   @RequestParam(value = "ack", required = false) String ackParam,
+                                                                   Principal principal) {
+        AckMode ack = ackParam != null ? ackMode(ackParam) : AckMode.BROKER;
+        if (requests.isEmpty() || requests.size() > maxBatchSize || ack == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<String> idempotencyKeys = new ArrayList<>(requests.size());
+        for (TaskSubmissionRequest request : requests) {
+            String key = request.getIdempotencyKey();
+            if (key != null && (key.isEmpty() || key.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+                return ResponseEntity.badRequest().build();
+            }
+            idempotencyKeys.add(scoped(key, principal));
+        }
+        List<Task> tasks = requests.stream()
+                .map(request -> taskService.newTask(request.getType(), request.getPayload(), request.getPriority()))
+                .collect(Collectors.toList());
+        List<BatchSubmissionResult> results = taskService.submitTasks(tasks, idempotencyKeys, ack);
+        for (BatchSubmissionResult result : results) {
+            if (result.getTaskId() != null && !result.isDuplicate()) {
+                publisher.publish(tasks.get(result.getIndex()), ALL_FIELDS);
+            }
+        }
+        return ResponseEntity.ok(results);
+    }
+
     @PostMapping("/{taskId}/cancel")
     public ResponseEntity<?> cancelTask(@PathVariable String taskId) {
         boolean result = taskService.cancelTask(taskId);
+        if (result) publishChanged(taskId);
         return result ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
     }
 
     @PostMapping("/{taskId}/pause")
     public ResponseEntity<?> pauseTask(@PathVariable String taskId) {
         boolean result = taskService.pauseTask(taskId);
+        if (result) publishChanged(taskId);
         return result ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
     }
 
     @PostMapping("/{taskId}/retry")
     public ResponseEntity<?> retryTask(@PathVariable String taskId) {
         boolean result = taskService.retryTask(taskId);
+        if (result) publishChanged(taskId);
         return result ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
     }
 
@@ -74,7 +177,9 @@ public class TaskController {
     @DeleteMapping("/{taskId}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> deleteTask(@PathVariable String taskId) {
+        Task deleted = taskService.getTask(taskId, EnumSet.of(TaskField.TYPE));
         boolean result = taskService.deleteTask(taskId);
+        if (result && deleted != null) publisher.publishDeleted(deleted);
         return result ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
     }
 
@@ -86,19 +191,102 @@ public class TaskController {
 
     /**
      * Paginated task list. Defaults to page=0, size=20.
-     * Uses Redis LRANGE offset/limit — does not load all tasks into memory.
+     * Reads one ZREVRANGE slice of the task index — does not load all tasks into memory.
+     * Optional fields=id,status,... reads only those hash fields (e.g. skip the payload).
      */
     @GetMapping
     public ResponseEntity<List<Task>> getAllTasks(
             @RequestParam(defaultValue = "0")  int page,
-            @RequestParam(defaultValue = "20") int size) {
-        List<Task> tasks = taskService.getAllTasks(page, size);
-        return ResponseEntity.ok(tasks);
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false)    String fields) {
+        if (fields == null) {
+            return ResponseEntity.ok(taskService.getAllTasks(page, size));
+        }
+        try {
+            return ResponseEntity.ok(taskService.getAllTasks(page, size, parseFields(fields)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
+    /**
+     * Cursor-paginated, newest first. Pass the returned nextCursor to fetch the next page;
+     * it is null on the last page. Reads only the requested page from the status index.
+     */
     @GetMapping("/status/{status}")
-    public ResponseEntity<List<Task>> getTasksByStatus(@PathVariable Task.TaskStatus status) {
-        return ResponseEntity.ok(taskService.getTasksByStatus(status));
+    public ResponseEntity<TaskPage> getTasksByStatus(
+            @PathVariable Task.TaskStatus status,
+            @RequestParam(required = false)    String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false)    String fields) {
+        try {
+            return ResponseEntity.ok(fields == null
+                    ? taskService.getTasksByStatus(status, cursor, size)
+                    : taskService.getTasksByStatus(status, cursor, size, parseFields(fields)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Every matching task as NDJSON (one task per line), oldest first, streamed batch by batch
+     * from the task index — heap use does not grow with the number of rows. from/to are ISO
+     * local date-times bounding createdAt; fields works as on the list endpoints.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTasks(
+            @RequestParam(required = false) Task.TaskStatus status,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String fields) {
+        Set<TaskField> read;
+        try {
+            read = fields == null ? ALL_FIELDS : parseFields(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        ObjectWriter writer = objectMapper.writerFor(Task.class);
+        StreamingResponseBody body = out -> taskService.exportTasks(status, type, from, to, read, tasks -> {
+            for (Task task : tasks) {
+                out.write(writer.writeValueAsBytes(task));
+                out.write('\n');
+            }
+            out.flush();
+        });
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    /** Idempotency keys are per user, so two clients cannot collide on (or probe) each other's keys. */
+    private static String scoped(String idempotencyKey, Principal principal) {
+        if (idempotencyKey == null) return null;
+        return (principal != null ? principal.getName() : "anonymous") + ":" + idempotencyKey;
+    }
+
+    /** The ack mode named by the request, or null if unrecognised. */
+    private AckMode ackMode(String ackParam) {
+        try {
+            return AckMode.fromParam(ackParam);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Delta for a user action — the fields cancel/pause/retry can change. */
+    private void publishChanged(String taskId) {
+        Task task = taskService.getTask(taskId, ACTION_FIELDS);
+        if (task != null) publisher.publish(task, ACTION_FIELDS);
+    }
+
+    private static Set<TaskField> parseFields(String fields) {
+        Set<TaskField> parsed = EnumSet.noneOf(TaskField.class);
+        Arrays.stream(fields.split(",")).map(String::trim).filter(f -> !f.isEmpty())
+                .map(TaskField::fromFieldName).forEach(parsed::add);
+        return parsed;
     }
 
     @GetMapping("/statistics")
@@ -106,17 +294,51 @@ public class TaskController {
         return ResponseEntity.ok(taskService.getTaskStatistics());
     }
 
+    /** Near-cache hit/miss/eviction counters, for sizing task.cache.max-size. */
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> getCacheStatistics() {
+        return ResponseEntity.ok(taskService.getCacheStatistics());
+    }
+
     @GetMapping("/workers")
     public ResponseEntity<List<Map<String, Object>>> getActiveWorkers() {
         return ResponseEntity.ok(taskService.getActiveWorkers());
     }
 
+    /** Effective rate limit per processor type, configured or set at runtime. */
+    @GetMapping("/rate-limits")
+    public ResponseEntity<Map<String, Map<String, Object>>> getRateLimits() {
+        return ResponseEntity.ok(rateLimiter.getLimits());
+    }
+
+    /** Changes a type's limit on every node at once; perSecond 0 = unlimited, burst 0 = one second's worth. */
+    @PutMapping("/rate-limits/{type}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> setRateLimit(@PathVariable String type, @RequestBody RateLimitRequest request) {
+        if (!rateLimiter.isKnownType(type) || request.getPerSecond() < 0 || request.getBurst() < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        rateLimiter.setLimit(type, request.getPerSecond(), request.getBurst());
+        return ResponseEntity.ok(rateLimiter.getLimits().get(type));
+    }
+
+    /** Drops the runtime limit — the type goes back to its configured one. */
+    @DeleteMapping("/rate-limits/{type}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> clearRateLimit(@PathVariable String type) {
+        if (!rateLimiter.isKnownType(type)) return ResponseEntity.notFound().build();
+        rateLimiter.clearLimit(type);
+        return ResponseEntity.ok(rateLimiter.getLimits().get(type));
+    }
+
     // ── DTO ───────────────────────────────────────────────────────────────────
 
     public static class TaskSubmissionRequest {
         private String type;
         private Map<String, Object> payload;
         private Task.Priority priority;
+        // Optional — for /batch items, or instead of the Idempotency-Key header
+        private String idempotencyKey;
 
         public TaskSubmissionRequest() {}
 
@@ -134,5 +356,19 @@ public class TaskController {
 
         public Task.Priority getPriority() { return priority; }
         public void setPriority(Task.Priority priority) { this.priority = priority; }
+
+        public String getIdempotencyKey() { return idempotencyKey; }
+        public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+    }
+
+    public static class RateLimitRequest {
+        private double perSecond;
+        private int burst;
+
+        public double getPerSecond() { return perSecond; }
+        public void setPerSecond(double perSecond) { this.perSecond = perSecond; }
+
+        public int getBurst() { return burst; }
+        public void setBurst(int burst) { this.burst = burst; }
     }
 }
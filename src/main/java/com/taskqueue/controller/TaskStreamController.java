@@ -0,0 +1,59 @@
+package com.taskqueue.controller;
+
+import com.taskqueue.Task;
+import com.taskqueue.model.TaskSnapshot;
+import com.taskqueue.service.TaskService;
+import com.taskqueue.service.TaskUpdatePublisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Snapshots for the task-updates stream. Subscribing to /app/task-updates[/type/{type}|/task/{id}]
+ * returns one TaskSnapshot straight to the client, after it has subscribed to the matching
+ * /topic destination. The seq is taken before Redis is read, so nothing between is missed.
+ */
+@Controller
+public class TaskStreamController {
+
+    private final TaskService taskService;
+    private final TaskUpdatePublisher publisher;
+    private final int snapshotSize;
+
+    public TaskStreamController(TaskService taskService,
+                                TaskUpdatePublisher publisher,
+                                @Value("${task.updates.snapshot-size:200}") int snapshotSize) {
+        this.taskService  = taskService;
+        this.publisher    = publisher;
+        this.snapshotSize = snapshotSize;
+    }
+
+    /** The newest snapshotSize tasks. */
+    @SubscribeMapping("/task-updates")
+    public TaskSnapshot allTasks() {
+        long seq = publisher.currentSeq(TaskUpdatePublisher.ALL_DESTINATION);
+        return new TaskSnapshot(seq, taskService.getAllTasks(0, snapshotSize));
+    }
+
+    /** Tasks of the type among the newest snapshotSize tasks. */
+    @SubscribeMapping("/task-updates/type/{type}")
+    public TaskSnapshot tasksOfType(@DestinationVariable String type) {
+        long seq = publisher.currentSeq(TaskUpdatePublisher.TYPE_PREFIX + type);
+        List<Task> tasks = taskService.getAllTasks(0, snapshotSize).stream()
+                .filter(task -> type.equals(task.getType()))
+                .collect(Collectors.toList());
+        return new TaskSnapshot(seq, tasks);
+    }
+
+    @SubscribeMapping("/task-updates/task/{taskId}")
+    public TaskSnapshot task(@DestinationVariable String taskId) {
+        long seq = publisher.currentSeq(TaskUpdatePublisher.TASK_PREFIX + taskId);
+        Task task = taskService.getTask(taskId);
+        return new TaskSnapshot(seq, task != null ? List.of(task) : Collections.emptyList());
+    }
+}
@@ -0,0 +1,16 @@
+package com.taskqueue.model;
+
+/**
+ * When a submit responds. OUTBOX: once the task and its outbox entry are in Redis — the
+ * message is sent right after, and the outbox relay republishes it if the send fails.
+ * BROKER: only after Kafka has acked the message as well.
+ */
+public enum AckMode {
+    OUTBOX,
+    BROKER;
+
+    /** Accepts "outbox" / "broker" in any case. */
+    public static AckMode fromParam(String value) {
+        return valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,39 @@
+package com.taskqueue.model;
+
+/**
+ * Outcome of one item in a batch submission, matched to the request by index.
+ * error is null when the task was stored. pending marks a stored task the broker has not
+ * (yet) acked — always the case when the submit did not wait for acks; the outbox relay
+ * publishes it. duplicate marks an item whose idempotency key was already used; taskId is
+ * then the original task.
+ */
+public class BatchSubmissionResult {
+    private int index;
+    private String taskId;
+    private String error;
+    private boolean duplicate;
+    private boolean pending;
+
+    public BatchSubmissionResult(int index, String taskId, String error) {
+        this(index, taskId, error, false);
+    }
+
+    public BatchSubmissionResult(int index, String taskId, String error, boolean duplicate) {
+        this.index = index;
+        this.taskId = taskId;
+        this.error = error;
+        this.duplicate = duplicate;
+    }
+
+    // Getters and setters
+    public int getIndex() { return index; }
+    public void setIndex(int index) { this.index = index; }
+    public String getTaskId() { return taskId; }
+    public void setTaskId(String taskId) { this.taskId = taskId; }
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+    public boolean isDuplicate() { return duplicate; }
+    public void setDuplicate(boolean duplicate) { this.duplicate = duplicate; }
+    public boolean isPending() { return pending; }
+    public void setPending(boolean pending) { this.pending = pending; }
+}
@@ -0,0 +1,40 @@
+package com.taskqueue.model;
+
+/**
+ * Fields of the task:{id} hash — one per Task property, named like its JSON property.
+ * Used to write only what a transition changed and to read only what a view needs.
+ */
+public enum TaskField {
+    ID("id"),
+    TYPE("type"),
+    STATUS("status"),
+    WORKER_ID("workerId"),
+    PAYLOAD("payload"),
+    RESULT("result"),
+    ERROR("error"),
+    RETRY_COUNT("retryCount"),
+    MAX_RETRIES("maxRetries"),
+    PRIORITY("priority"),
+    CREATED_AT("createdAt"),
+    STARTED_AT("startedAt"),
+    COMPLETED_AT("completedAt"),
+    EXECUTION_TIME_MS("executionTimeMs");
+
+    private final String fieldName;
+
+    TaskField(String fieldName) {
+        this.fieldName = fieldName;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /** Accepts the hash/JSON field name, e.g. "workerId". */
+    public static TaskField fromFieldName(String name) {
+        for (TaskField field : values()) {
+            if (field.fieldName.equals(name)) return field;
+        }
+        throw new IllegalArgumentException("Unknown task field: " + name);
+    }
+}
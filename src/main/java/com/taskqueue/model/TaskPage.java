@@ -0,0 +1,25 @@
+package com.taskqueue.model;
+
+import com.taskqueue.Task;
+
+import java.util.List;
+
+/**
+ * One page of a cursor-paginated task listing.
+ * nextCursor is opaque to clients and null on the last page.
+ */
+public class TaskPage {
+    private List<Task> tasks;
+    private String nextCursor;
+
+    public TaskPage(List<Task> tasks, String nextCursor) {
+        this.tasks = tasks;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters and setters
+    public List<Task> getTasks() { return tasks; }
+    public void setTasks(List<Task> tasks) { this.tasks = tasks; }
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+}
@@ -0,0 +1,25 @@
+package com.taskqueue.model;
+
+import com.taskqueue.Task;
+
+import java.util.List;
+
+/**
+ * Initial state for a task-updates subscription. Apply the batches whose seq is greater
+ * than this seq on top of the tasks; those at or below it are already included.
+ */
+public class TaskSnapshot {
+    private long seq;
+    private List<Task> tasks;
+
+    public TaskSnapshot(long seq, List<Task> tasks) {
+        this.seq = seq;
+        this.tasks = tasks;
+    }
+
+    // Getters and setters
+    public long getSeq() { return seq; }
+    public void setSeq(long seq) { this.seq = seq; }
+    public List<Task> getTasks() { return tasks; }
+    public void setTasks(List<Task> tasks) { this.tasks = tasks; }
+}
@@ -0,0 +1,25 @@
+package com.taskqueue.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One conflated batch of task deltas sent to a /topic/task-updates destination.
+ * seq increases by one per batch on each destination, so a gap means a lost batch.
+ * Each delta holds id, type and only the fields that changed; deleted=true marks a removal.
+ */
+public class TaskUpdateBatch {
+    private long seq;
+    private List<Map<String, Object>> updates;
+
+    public TaskUpdateBatch(long seq, List<Map<String, Object>> updates) {
+        this.seq = seq;
+        this.updates = updates;
+    }
+
+    // Getters and setters
+    public long getSeq() { return seq; }
+    public void setSeq(long seq) { this.seq = seq; }
+    public List<Map<String, Object>> getUpdates() { return updates; }
+    public void setUpdates(List<Map<String, Object>> updates) { this.updates = updates; }
+}
@@ -0,0 +1,63 @@
+package com.taskqueue.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Claim-check rules for large task fields (payload, result). An encoded value above the
+ * threshold is gzipped into its own key, task:{id}:{field}, and the hash field holds only a
+ * reference: 0xFF followed by the field name. 0xFF never starts a codec payload ('{' or the
+ * binary version byte) nor any UTF-8 string, so references cannot be mistaken for values.
+ * The side keys are only ever named inside the Lua scripts (save-, read- and delete-task.lua).
+ */
+final class ClaimCheck {
+
+    static final int DEFAULT_THRESHOLD_BYTES = 16 * 1024;
+
+    private static final byte REFERENCE_MARK = (byte) 0xFF;
+
+    private final int thresholdBytes;
+
+    ClaimCheck(int thresholdBytes) {
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    boolean exceeds(byte[] value) {
+        return value != null && value.length > thresholdBytes;
+    }
+
+    boolean exceeds(String value) {
+        return value != null && value.length() > thresholdBytes / 3
+                && value.getBytes(StandardCharsets.UTF_8).length > thresholdBytes;
+    }
+
+    static byte[] reference(String fieldName) {
+        byte[] name = fieldName.getBytes(StandardCharsets.US_ASCII);
+        byte[] ref = new byte[name.length + 1];
+        ref[0] = REFERENCE_MARK;
+        System.arraycopy(name, 0, ref, 1, name.length);
+        return ref;
+    }
+
+    static boolean isReference(Object value) {
+        return value instanceof byte[] && ((byte[]) value).length > 0 && ((byte[]) value)[0] == REFERENCE_MARK;
+    }
+
+    static byte[] compress(byte[] value) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(value.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(value);
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] decompress(byte[] blob) throws IOException {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(blob))) {
+            return gzip.readAllBytes();
+        }
+    }
+}
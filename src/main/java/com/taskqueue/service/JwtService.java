@@ -60,6 +60,14 @@ public class JwtService {
     }
 
     private Claims extractAllClaims(String token) {
+        return parseClaims(token);
+    }
+
+    /**
+     * Verifies the signature and expiry and returns every claim in one parse.
+     * Throws a JwtException (e.g. ExpiredJwtException) when the token is not valid.
+     */
+    public Claims parseClaims(String token) {
         return Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token).getBody();
     }
 
@@ -0,0 +1,129 @@
+package com.taskqueue.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies bearer tokens for JwtAuthenticationFilter: each token is parsed and HMAC-checked
+ * once, then its subject and authorities are served from a bounded cache until the token
+ * expires. The role claim written by JwtService.generateToken supplies the authority, so
+ * the user table is only read for tokens without one.
+ *
+ * Because the database is no longer consulted per request, revokeUser is the hook for
+ * anything that must end a user's sessions early (role change, deletion): it evicts the
+ * user's cached tokens and rejects every token issued before the call. Revocations are
+ * held in memory on this node.
+ */
+@Service
+@Slf4j
+public class JwtTokenVerifier {
+
+    private final JwtService jwtService;
+    private final UserDetailsService userDetailsService;
+    private final Cache<String, VerifiedToken> verified;
+    // username -> epoch second; tokens issued before it are rejected
+    private final Map<String, Long> revokedBefore = new ConcurrentHashMap<>();
+
+    public JwtTokenVerifier(JwtService jwtService,
+                            UserDetailsService userDetailsService,
+                            @Value("${jwt.cache.max-size:10000}") long maxSize) {
+        this.jwtService         = jwtService;
+        this.userDetailsService = userDetailsService;
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String token, VerifiedToken value, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, value.expiresAtMs - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, VerifiedToken value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(token, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /** The verified token, or null if it is malformed, forged, expired or revoked. */
+    public VerifiedToken verify(String token) {
+        VerifiedToken cached = verified.getIfPresent(token);
+        if (cached != null) return cached;
+
+        Claims claims;
+        try {
+            claims = jwtService.parseClaims(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+        String username = claims.getSubject();
+        if (username == null || claims.getExpiration() == null || isRevoked(username, claims)) return null;
+
+        String role = claims.get("role", String.class);
+        Collection<? extends GrantedAuthority> authorities = role != null
+                ? Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role))
+                : userDetailsService.loadUserByUsername(username).getAuthorities();
+
+        VerifiedToken result = new VerifiedToken(username, new ArrayList<>(authorities), claims.getExpiration().getTime());
+        verified.put(token, result);
+        // A revokeUser that ran while this token was being verified must still win
+        if (isRevoked(username, claims)) {
+            verified.invalidate(token);
+            return null;
+        }
+        return result;
+    }
+
+    /** Ends every session of the user issued up to now, on this node. */
+    public void revokeUser(String username) {
+        revokedBefore.put(username, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+        verified.asMap().values().removeIf(token -> token.getUsername().equals(username));
+        log.info("Revoked tokens of user {}", username);
+    }
+
+    private boolean isRevoked(String username, Claims claims) {
+        Long before = revokedBefore.get(username);
+        // iat has second precision — a token issued in the revoking second stays valid
+        return before != null && claims.getIssuedAt() != null
+                && TimeUnit.MILLISECONDS.toSeconds(claims.getIssuedAt().getTime()) < before;
+    }
+
+    /** Subject and authorities of a token whose signature and expiry have been checked. */
+    public static final class VerifiedToken {
+        private final String username;
+        private final List<GrantedAuthority> authorities;
+        private final long expiresAtMs;
+
+        VerifiedToken(String username, List<GrantedAuthority> authorities, long expiresAtMs) {
+            this.username    = username;
+            this.authorities = Collections.unmodifiableList(authorities);
+            this.expiresAtMs = expiresAtMs;
+        }
+
+        public String getUsername() { return username; }
+        public List<GrantedAuthority> getAuthorities() { return authorities; }
+        public long getExpiresAtMs() { return expiresAtMs; }
+    }
+}
@@ -0,0 +1,36 @@
+package com.taskqueue.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drains the task outbox: every submit and retry queues its task in tasks:outbox in the same
+ * script that stores it, and this job publishes whatever the submitting node did not get
+ * acked. Every node polls; the claim script hands each due entry to one node, so no lock is
+ * needed. Runs until a pass claims less than a full batch.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxRelay {
+
+    private final TaskService taskService;
+
+    @Value("${task.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${task.outbox.poll-interval-ms:100}")
+    public void relay() {
+        try {
+            int claimed;
+            do {
+                claimed = taskService.relayOutbox(batchSize);
+            } while (claimed == batchSize);
+        } catch (Exception e) {
+            log.error("Failed to relay the task outbox", e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.taskqueue.service;
+
+import com.taskqueue.Task;
+import com.taskqueue.codec.TaskCodec;
+import com.taskqueue.model.TaskField;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+/**
+ * Converts Task properties to and from task:{id} hash field values. Scalars are stored as
+ * readable strings (timestamps ISO-8601, enums by name) so Lua scripts and redis-cli can use
+ * them directly; the payload goes through the configured TaskCodec. A null value is a missing field.
+ */
+final class TaskHashMapper {
+
+    private final TaskCodec taskCodec;
+
+    TaskHashMapper(TaskCodec taskCodec) {
+        this.taskCodec = taskCodec;
+    }
+
+    byte[] encode(Task task, TaskField field) throws IOException {
+        switch (field) {
+            case ID:                return utf8(task.getId());
+            case TYPE:              return utf8(task.getType());
+            case STATUS:            return task.getStatus() != null ? utf8(task.getStatus().name()) : null;
+            case WORKER_ID:         return utf8(task.getWorkerId());
+            case PAYLOAD:           return task.getPayload() != null ? taskCodec.encodePayload(task.getPayload()) : null;
+            case RESULT:            return utf8(task.getResult());
+            case ERROR:             return utf8(task.getError());
+            case RETRY_COUNT:       return utf8(String.valueOf(task.getRetryCount()));
+            case MAX_RETRIES:       return utf8(String.valueOf(task.getMaxRetries()));
+            case PRIORITY:          return task.getPriority() != null ? utf8(task.getPriority().name()) : null;
+            case CREATED_AT:        return timestamp(task.getCreatedAt());
+            case STARTED_AT:        return timestamp(task.getStartedAt());
+            case COMPLETED_AT:      return timestamp(task.getCompletedAt());
+            case EXECUTION_TIME_MS: return utf8(String.valueOf(task.getExecutionTimeMs()));
+            default: throw new IllegalArgumentException("Unmapped task field: " + field);
+        }
+    }
+
+    void decode(Task task, TaskField field, byte[] value) throws IOException {
+        String s = value != null && field != TaskField.PAYLOAD ? new String(value, StandardCharsets.UTF_8) : null;
+        try {
+            switch (field) {
+                case ID:                task.setId(s); break;
+                case TYPE:              task.setType(s); break;
+                case STATUS:            task.setStatus(s != null ? Task.TaskStatus.valueOf(s) : null); break;
+                case WORKER_ID:         task.setWorkerId(s); break;
+                case PAYLOAD:           task.setPayload(value != null ? taskCodec.decodePayload(value) : null); break;
+                case RESULT:            task.setResult(s); break;
+                case ERROR:             task.setError(s); break;
+                case RETRY_COUNT:       task.setRetryCount(s != null ? Integer.parseInt(s) : 0); break;
+                case MAX_RETRIES:       task.setMaxRetries(s != null ? Integer.parseInt(s) : 0); break;
+                case PRIORITY:          task.setPriority(s != null ? Task.Priority.valueOf(s) : null); break;
+                case CREATED_AT:        task.setCreatedAt(s != null ? LocalDateTime.parse(s) : null); break;
+                case STARTED_AT:        task.setStartedAt(s != null ? LocalDateTime.parse(s) : null); break;
+                case COMPLETED_AT:      task.setCompletedAt(s != null ? LocalDateTime.parse(s) : null); break;
+                case EXECUTION_TIME_MS: task.setExecutionTimeMs(s != null ? Long.parseLong(s) : 0); break;
+                default: throw new IllegalArgumentException("Unmapped task field: " + field);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed task field " + field.getFieldName() + ": " + s, e);
+        }
+    }
+
+    private static byte[] utf8(String s) {
+        return s != null ? s.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static byte[] timestamp(LocalDateTime time) {
+        return time != null ? utf8(time.toString()) : null;
+    }
+}
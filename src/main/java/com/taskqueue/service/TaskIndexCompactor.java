@@ -0,0 +1,45 @@
+package com.taskqueue.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Periodically drops index entries whose task keys have expired, so the task index and the
+ * status indexes stay at roughly one TTL's worth of ids instead of growing forever. The first
+ * run after an upgrade also moves the old tasks:all list into the index. Like the statistics
+ * reconcile, a Redis lock held for half the interval keeps one node compacting at a time.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TaskIndexCompactor {
+
+    private static final String COMPACT_LOCK = "tasks:index:compact-lock";
+
+    private final TaskService taskService;
+    private final RedisTemplate<String, String> redisTemplate;
+
+    @Value("${task.index.compact-interval-ms:60000}")
+    private long intervalMs;
+
+    @Scheduled(initialDelayString = "${task.index.compact-initial-delay-ms:5000}",
+               fixedDelayString   = "${task.index.compact-interval-ms:60000}")
+    public void compact() {
+        Boolean acquired = redisTemplate.opsForValue().setIfAbsent(COMPACT_LOCK, "1", Duration.ofMillis(intervalMs / 2));
+        if (!Boolean.TRUE.equals(acquired)) {
+            log.debug("Index compaction skipped — another node holds the lock");
+            return;
+        }
+        try {
+            taskService.compactIndexes();
+        } catch (Exception e) {
+            log.error("Failed to compact task indexes", e);
+        }
+    }
+}
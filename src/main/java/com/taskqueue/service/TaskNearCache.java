@@ -0,0 +1,141 @@
+package com.taskqueue.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.taskqueue.Task;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Optional in-process cache of full tasks in front of getTask (task.cache.enabled).
+ *
+ * Caffeine bounds it by count with W-TinyLFU admission, so hot dashboard ids stay while
+ * one-off reads are not admitted over them. save-task.lua and delete-task.lua PUBLISH the id
+ * on {@value #INVALIDATION_CHANNEL} with every write, so all nodes drop their copy; entries
+ * also expire after ttlMs, which bounds staleness if a message is lost on a reconnect.
+ *
+ * A read that raced with a write must not cache what it read: readers take a stamp from one
+ * of {@value #STRIPES} invalidation counters before going to Redis and the put is dropped if
+ * that counter moved. Tasks are copied in and out, so callers may modify what they get.
+ */
+@Component
+@Slf4j
+public class TaskNearCache {
+
+    public static final String INVALIDATION_CHANNEL = "tasks:invalidate";
+
+    private static final int STRIPES = 1024;
+
+    private final Cache<String, Task> cache;
+    private final RedisConnectionFactory connectionFactory;
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    public TaskNearCache(RedisConnectionFactory connectionFactory,
+                         @Value("${task.cache.enabled:false}") boolean enabled,
+                         @Value("${task.cache.max-size:10000}") long maxSize,
+                         @Value("${task.cache.ttl-ms:30000}") long ttlMs) {
+        this.connectionFactory = connectionFactory;
+        this.cache = enabled
+                ? Caffeine.newBuilder()
+                        .maximumSize(maxSize)
+                        .expireAfterWrite(Duration.ofMillis(ttlMs))
+                        .recordStats()
+                        .build()
+                : null;
+    }
+
+    /** A cache that never holds anything — for callers built without Spring. */
+    public static TaskNearCache disabled() {
+        return new TaskNearCache(null, false, 0, 0);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (cache == null || connectionFactory == null) return;
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        listenerContainer.addMessageListener(
+                (message, pattern) -> invalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(INVALIDATION_CHANNEL));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+        log.info("Task near-cache enabled, invalidated via {}", INVALIDATION_CHANNEL);
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+        }
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /** Copy of the cached task, or null. Counts a hit or a miss. */
+    Task get(String taskId) {
+        if (cache == null) return null;
+        Task task = cache.getIfPresent(taskId);
+        return task != null ? task.copy() : null;
+    }
+
+    /** Taken before reading the task from Redis, then handed to put. */
+    long stamp(String taskId) {
+        return generations.get(stripe(taskId));
+    }
+
+    /** Caches the task read under the stamp, unless the id was invalidated since. */
+    void put(Task task, long stamp) {
+        if (cache == null) return;
+        int stripe = stripe(task.getId());
+        if (generations.get(stripe) != stamp) return;
+        cache.put(task.getId(), task.copy());
+        // An invalidation between the check and the put would otherwise be lost
+        if (generations.get(stripe) != stamp) {
+            cache.invalidate(task.getId());
+        }
+    }
+
+    /** Called for local writes directly, and for every node's writes via the channel. */
+    void invalidate(String taskId) {
+        generations.incrementAndGet(stripe(taskId));
+        if (cache != null) {
+            cache.invalidate(taskId);
+        }
+    }
+
+    /** Hit/miss/eviction counters since startup, for sizing. */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", cache != null);
+        if (cache == null) return stats;
+        CacheStats s = cache.stats();
+        stats.put("size",          cache.estimatedSize());
+        stats.put("hits",          s.hitCount());
+        stats.put("misses",        s.missCount());
+        stats.put("hitRate",       s.hitRate());
+        stats.put("evictions",     s.evictionCount());
+        return stats;
+    }
+
+    private static int stripe(String taskId) {
+        return (taskId.hashCode() & 0x7fffffff) % STRIPES;
+    }
+}
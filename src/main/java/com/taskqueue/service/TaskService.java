@@ -3,36 +3,288 @@ package com.taskqueue.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.taskqueue.Task;
-import lombok.RequiredArgsConstructor;
+import com.taskqueue.codec.TaskCodec;
+import com.taskqueue.model.AckMode;
+import com.taskqueue.model.BatchSubmissionResult;
+import com.taskqueue.model.TaskField;
+import com.taskqueue.model.TaskPage;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
 import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class TaskService {
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
     private final RedisTemplate<String, String> redisTemplate;
     private final ObjectMapper objectMapper;
+    private final TaskCodec taskCodec;
+    private final TaskHashMapper hashMapper;
+    private final TaskNearCache nearCache;
+    private final ClaimCheck claimCheck;
+    // Outbox entries whose direct send the broker has acked — (id, claim) — released by the next relay run
+    private final Queue<Map.Entry<String, Long>> outboxAcked = new ConcurrentLinkedQueue<>();
 
     private static final String TASK_TOPIC   = "task-queue";
+    // One hash per task — fields named by TaskField
     private static final String TASK_PREFIX  = "task:";
-    private static final String TASK_LIST    = "tasks:all";
+    // Every task id, scored by createdAt epoch millis — newest last
+    private static final String TASK_INDEX   = "tasks:index";
+    // Unbounded id list the index replaced; drained into it by compactIndexes
+    private static final String LEGACY_TASK_LIST = "tasks:all";
+    private static final String TASK_STATS   = "tasks:stats";
+    // One sorted set per TaskStatus, scored by createdAt — e.g. tasks:status:FAILED
+    private static final String STATUS_INDEX_PREFIX = "tasks:status:";
     private static final String WORKER_PREFIX = "worker:";
+    // Client idempotency key -> id of the task it created, for the task's first TTL
+    private static final String IDEMPOTENCY_PREFIX = "tasks:idempotency:";
+    // Task ids still to be published to Kafka, scored by when the relay may (re)publish them
+    private static final String OUTBOX = "tasks:outbox";
+
+    private static final long TASK_TTL_SECONDS = TimeUnit.HOURS.toSeconds(24);
+    private static final long WORKER_TTL_MINUTES = 5;
+    // A submitter owns the outbox entry of the message it sent this long; then the relay takes over
+    private static final long OUTBOX_CLAIM_MS = TimeUnit.SECONDS.toMillis(30);
+
+    // Lua scripts keep the statistics hash in step with every status change, atomically
+    private static final RedisScript<Long> SAVE_TASK_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/save-task.lua"), Long.class);
+    private static final RedisScript<Long> DELETE_TASK_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/delete-task.lua"), Long.class);
+    private static final RedisScript<List> READ_TASKS_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/read-tasks.lua"), List.class);
+    private static final RedisScript<List> COMPACT_INDEX_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/compact-index.lua"), List.class);
+    private static final RedisScript<List> CLAIM_OUTBOX_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/claim-due.lua"), List.class);
+    private static final RedisScript<Long> RELEASE_OUTBOX_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/release-outbox.lua"), Long.class);
+
+    private static final Set<TaskField> ALL_FIELDS = Collections.unmodifiableSet(EnumSet.allOf(TaskField.class));
+    // Fields large enough to be claim-checked; Kafka messages carry neither
+    private static final Set<TaskField> CLAIM_CHECKED = Collections.unmodifiableSet(EnumSet.of(TaskField.PAYLOAD, TaskField.RESULT));
+    /** What a Kafka task message carries — the worker reads the rest, payload included, from Redis. */
+    public static final Set<TaskField> MESSAGE_FIELDS = Collections.unmodifiableSet(EnumSet.complementOf(EnumSet.copyOf(CLAIM_CHECKED)));
+    private static final String FULL_WRITE    = "full";
+    private static final String PARTIAL_WRITE = "partial";
+
+    // Payload fields and script results stay raw bytes; every other argument is a UTF-8 string
+    private static final RedisSerializer<Object> SCRIPT_ARGS = new RedisSerializer<Object>() {
+        @Override
+        public byte[] serialize(Object value) {
+            return value instanceof byte[] ? (byte[]) value : String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) {
+            return bytes;
+        }
+    };
+    private static final RedisSerializer<Long> LONG_RESULT = new GenericToStringSerializer<>(Long.class);
+
+    // Statistics hash fields beyond the per-status counters
+    private static final String STAT_TOTAL          = "total";
+    private static final String STAT_COMPLETED_TIME = "completedExecutionTimeMs";
+
+    // Bulk reads: ids per MGET, and the page size above which parsing goes parallel
+    private static final int BULK_READ_BATCH          = 1000;
+    // Ids per call when claim-checked payloads or results are read too, bounding one reply's size
+    private static final int CLAIM_CHECKED_READ_BATCH = 100;
+    private static final int PARALLEL_PARSE_THRESHOLD = 64;
+    private static final int MAX_PAGE_SIZE            = 500;
+    // Index entries examined per compact-index.lua call, so one call never blocks Redis for long
+    private static final int COMPACT_BATCH            = 500;
+
+    // BROKER-ack submits and outbox relay passes wait this long for the broker to ack their sends,
+    // measured once per submit or pass rather than per send
+    private static final long ACK_TIMEOUT_SECONDS = 30;
+
+    public TaskService(KafkaTemplate<String, byte[]> kafkaTemplate,
+                       RedisTemplate<String, String> redisTemplate,
+                       ObjectMapper objectMapper,
+                       TaskCodec taskCodec,
+                       TaskNearCache nearCache,
+                       @Value("${task.claim-check.threshold-bytes:16384}") int claimCheckThresholdBytes) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper  = objectMapper;
+        this.taskCodec     = taskCodec;
+        this.hashMapper    = new TaskHashMapper(taskCodec);
+        this.nearCache     = nearCache;
+        this.claimCheck    = new ClaimCheck(claimCheckThresholdBytes);
+    }
 
     // ── Submit ────────────────────────────────────────────────────────────────
 
     public Task submitTask(String type, Map<String, Object> payload, Task.Priority priority) {
+        return submitTask(newTask(type, payload, priority), null);
+    }
+
+    public Task submitTask(Task task, String idempotencyKey) {
+        return submitTask(task, idempotencyKey, AckMode.OUTBOX);
+    }
+
+    /**
+     * Stores a task built by newTask and queues it in the outbox in the same script, then sends
+     * the message; a send that fails is republished by the outbox relay. With AckMode.BROKER
+     * this waits for the broker ack and throws EnqueuePendingException if none arrives — the
+     * task is stored and will still be published.
+     * With an idempotency key, the first submission claims it in the same script; a repeat
+     * returns the task the key already maps to and enqueues nothing (null if that task has
+     * since been deleted or expired). Compare ids to tell a repeat from a new submission.
+     */
+    public Task submitTask(Task task, String idempotencyKey, AckMode ack) {
+        ListenableFuture<SendResult<String, byte[]>> sent;
+        try {
+            byte[] message = encodeMessage(task);
+            long claim = outboxClaim();
+            if (saveTask(task, ALL_FIELDS, true, idempotencyKey, claim) == 0) {
+                return idempotentTask(idempotencyKey);
+            }
+            sent = sendClaimed(topicFor(task), task, message, claim);
+            log.info("Task submitted: {} priority={}", task.getId(), task.getPriority());
+        } catch (IOException e) {
+            log.error("Failed to serialize task: {}", task.getId(), e);
+            throw new RuntimeException("Failed to submit task", e);
+        }
+        if (ack == AckMode.BROKER && !awaitAck(task, sent, ackDeadline())) {
+            throw new EnqueuePendingException(task);
+        }
+        return task;
+    }
+
+    /** A BROKER-ack submit whose message was not acked in time; the outbox relay will publish the stored task. */
+    public static class EnqueuePendingException extends RuntimeException {
+        private final transient Task task;
+
+        EnqueuePendingException(Task task) {
+            super("Task " + task.getId() + " stored but not yet acked by the broker");
+            this.task = task;
+        }
+
+        public Task getTask() {
+            return task;
+        }
+    }
+
+    /** The task an idempotency key was claimed by, or null if it no longer exists. */
+    private Task idempotentTask(String idempotencyKey) {
+        String taskId = redisTemplate.opsForValue().get(IDEMPOTENCY_PREFIX + idempotencyKey);
+        Task task = taskId != null ? getTask(taskId) : null;
+        log.info("Duplicate submission for idempotency key {} -> task {}", idempotencyKey, taskId);
+        return task;
+    }
+
+    public List<BatchSubmissionResult> submitTasks(List<Task> tasks) {
+        return submitTasks(tasks, Collections.nCopies(tasks.size(), null));
+    }
+
+    public List<BatchSubmissionResult> submitTasks(List<Task> tasks, List<String> idempotencyKeys) {
+        return submitTasks(tasks, idempotencyKeys, AckMode.BROKER);
+    }
+
+    /**
+     * Bulk submit — every task key, index and outbox entry is written in one Redis pipeline,
+     * then Kafka sends are handed to the producer grouped by priority topic so they leave in
+     * large producer batches. With AckMode.BROKER this returns after the broker has acked or
+     * rejected every send; either way a task whose send fails is reported pending and
+     * republished by the outbox relay.
+     * idempotencyKeys.get(i) (may be null) works as in submitTask: a repeat is reported as
+     * a duplicate with the original task id and is not sent.
+     */
+    public List<BatchSubmissionResult> submitTasks(List<Task> tasks, List<String> idempotencyKeys, AckMode ack) {
+        List<BatchSubmissionResult> results = new ArrayList<>(tasks.size());
+        byte[][] serialized = new byte[tasks.size()][];
+        Object[][] saveArgs = new Object[tasks.size()][];
+        long claim = outboxClaim();
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            try {
+                serialized[i] = encodeMessage(task);
+                saveArgs[i]   = saveTaskArgs(task, ALL_FIELDS, true, claim);
+                results.add(new BatchSubmissionResult(i, task.getId(), null));
+            } catch (IOException e) {
+                log.error("Failed to serialize task: {}", task.getId(), e);
+                serialized[i] = null;
+                results.add(new BatchSubmissionResult(i, null, "Failed to serialize task"));
+            }
+        }
+
+        if (Arrays.stream(saveArgs).anyMatch(Objects::nonNull)) {
+            List<Object> saved = saveTasksPipelined(tasks, saveArgs, idempotencyKeys, connection -> { });
+            // saved[0] is the SCRIPT LOAD reply, then one reply per script call in task order
+            int reply = 1;
+            for (int i = 0; i < tasks.size(); i++) {
+                if (saveArgs[i] == null) continue;
+                if (Long.valueOf(0).equals(saved.get(reply++))) {
+                    Task original = idempotentTask(idempotencyKeys.get(i));
+                    serialized[i] = null;
+                    results.set(i, original != null
+                            ? new BatchSubmissionResult(i, original.getId(), null, true)
+                            : new BatchSubmissionResult(i, null, "Idempotency key belongs to a task that no longer exists", true));
+                }
+            }
+        }
+
+        // Grouped per topic so each topic's records are appended to the producer back to back
+        Map<String, List<Integer>> byTopic = IntStream.range(0, tasks.size())
+                .filter(i -> serialized[i] != null).boxed()
+                .collect(Collectors.groupingBy(i -> topicFor(tasks.get(i)), LinkedHashMap::new, Collectors.toList()));
+        List<ListenableFuture<SendResult<String, byte[]>>> sends = new ArrayList<>(Collections.nCopies(tasks.size(), null));
+        byTopic.forEach((topic, indexes) -> indexes.forEach(i ->
+                sends.set(i, sendClaimed(topic, tasks.get(i), serialized[i], claim))));
+        kafkaTemplate.flush();
+
+        long pending = 0;
+        long deadline = ackDeadline();
+        for (int i = 0; i < tasks.size(); i++) {
+            if (serialized[i] == null) continue;
+            if (ack != AckMode.BROKER || !awaitAck(tasks.get(i), sends.get(i), deadline)) {
+                results.get(i).setPending(true);
+                pending++;
+            }
+        }
+        log.info("Batch submitted: {} tasks, {} not yet acked by the broker", tasks.size(), pending);
+        return results;
+    }
+
+    /** Builds a new PENDING task; does not persist or enqueue it. */
+    public Task newTask(String type, Map<String, Object> payload, Task.Priority priority) {
         Task task = new Task();
         task.setId(UUID.randomUUID().toString());
         task.setType(type);
@@ -42,126 +294,753 @@ public class TaskService {
         task.setMaxRetries(3);
         task.setPriority(priority != null ? priority : Task.Priority.NORMAL);
         task.setCreatedAt(LocalDateTime.now());
+        return task;
+    }
+
+    private String topicFor(Task task) {
+        return TASK_TOPIC + "-" + task.getPriority().name().toLowerCase();
+    }
 
+    /** Outbox score for messages sent now: the relay leaves them to their sender until then. */
+    private static long outboxClaim() {
+        return System.currentTimeMillis() + OUTBOX_CLAIM_MS;
+    }
+
+    /**
+     * Sends a message whose outbox entry carries the given claim; once acked, the entry is
+     * released by the next relay run. A send the producer rejects outright (e.g. no broker
+     * metadata within max.block.ms) comes back as a failed future — the task is already queued.
+     */
+    private ListenableFuture<SendResult<String, byte[]>> sendClaimed(String topic, Task task, byte[] message, long claim) {
+        ListenableFuture<SendResult<String, byte[]>> sent;
         try {
-            String taskJson = objectMapper.writeValueAsString(task);
-            redisTemplate.opsForValue().set(TASK_PREFIX + task.getId(), taskJson, 24, TimeUnit.HOURS);
-            redisTemplate.opsForList().leftPush(TASK_LIST, task.getId());
+            sent = kafkaTemplate.send(topic, task.getId(), message);
+        } catch (RuntimeException e) {
+            SettableListenableFuture<SendResult<String, byte[]>> rejected = new SettableListenableFuture<>();
+            rejected.setException(e);
+            sent = rejected;
+        }
+        if (sent != null) {
+            sent.addCallback(
+                    result -> outboxAcked.add(new AbstractMap.SimpleImmutableEntry<>(task.getId(), claim)),
+                    failure -> log.warn("Send of task {} failed, left to the outbox relay", task.getId(), failure));
+        }
+        return sent;
+    }
 
-            String topicName = TASK_TOPIC + "-" + task.getPriority().name().toLowerCase();
-            kafkaTemplate.send(topicName, task.getId(), taskJson);
+    /** System.nanoTime() ACK_TIMEOUT_SECONDS from now, shared by all the sends awaited together. */
+    private static long ackDeadline() {
+        return System.nanoTime() + TimeUnit.SECONDS.toNanos(ACK_TIMEOUT_SECONDS);
+    }
 
-            log.info("Task submitted: {} priority={}", task.getId(), task.getPriority());
-            return task;
-        } catch (JsonProcessingException e) {
-            log.error("Failed to serialize task: {}", task.getId(), e);
-            throw new RuntimeException("Failed to submit task", e);
+    /**
+     * Whether the broker acked the send by the deadline. Once the deadline has passed, only sends
+     * already acked count — a batch waits ACK_TIMEOUT_SECONDS in all, not per send.
+     */
+    private static boolean awaitAck(Task task, ListenableFuture<SendResult<String, byte[]>> sent, long deadline) {
+        if (sent == null) return true;
+        try {
+            sent.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (TimeoutException e) {
+            log.warn("Task {} not acked by the broker within {}s, left to the outbox relay", task.getId(), ACK_TIMEOUT_SECONDS);
+            return false;
+        } catch (ExecutionException e) {
+            log.warn("Task {} not acked by the broker, left to the outbox relay", task.getId(), e);
+            return false;
         }
     }
 
+    /** A task message is a claim ticket: the task without payload or result, whatever their size. */
+    private byte[] encodeMessage(Task task) throws IOException {
+        Task message = task.copy();
+        message.setPayload(null);
+        message.setResult(null);
+        return taskCodec.encode(message);
+    }
+
     // ── Read ──────────────────────────────────────────────────────────────────
 
     public Task getTask(String taskId) {
-        String taskJson = redisTemplate.opsForValue().get(TASK_PREFIX + taskId);
-        if (taskJson != null) {
-            try {
-                return objectMapper.readValue(taskJson, Task.class);
-            } catch (JsonProcessingException e) {
-                log.error("Failed to deserialize task: {}", taskId, e);
+        return getTask(taskId, ALL_FIELDS);
+    }
+
+    /**
+     * Reads only the given fields (plus id); properties not read keep their defaults.
+     * Claim-checked payloads and results are fetched in the same script call and decompressed.
+     * With the near-cache enabled a cached task is returned whole, whatever the fields, and
+     * full reads that miss are cached — unless they held a claim-checked value, which would
+     * make a count-bounded cache arbitrarily large.
+     */
+    public Task getTask(String taskId, Set<TaskField> fields) {
+        Task cached = nearCache.get(taskId);
+        if (cached != null) return cached;
+
+        long stamp = nearCache.stamp(taskId);
+        List<TaskField> columns = columns(fields);
+        List<Object> rows = readRows(Collections.singletonList(TASK_PREFIX + taskId), columns, true);
+        if (rows == null || rows.isEmpty()) return null;
+        List<?> row = (List<?>) rows.get(0);
+        Task task = parseTask(taskId, row, columns);
+        boolean claimChecked = row.size() > columns.size() + 1;
+        if (task != null && fields.containsAll(ALL_FIELDS) && !claimChecked) {
+            nearCache.put(task, stamp);
+        }
+        return task;
+    }
+
+    /** Near-cache counters — {"enabled": false} when it is off. */
+    public Map<String, Object> getCacheStatistics() {
+        return nearCache.getStatistics();
+    }
+
+    public List<Task> getTasks(List<String> taskIds) {
+        return getTasks(taskIds, ALL_FIELDS);
+    }
+
+    /**
+     * Bulk read — one script call per {@value #BULK_READ_BATCH} ids, each an HMGET of just the
+     * requested fields (plus id), so e.g. a list view can skip the payload. Pages larger than
+     * {@value #PARALLEL_PARSE_THRESHOLD} are decoded in parallel. Order is preserved; ids whose
+     * key has expired are dropped. Legacy whole-task string values are decoded in full.
+     * When the payload or result is requested, claim-checked values are fetched in the same
+     * calls, {@value #CLAIM_CHECKED_READ_BATCH} ids at a time.
+     */
+    public List<Task> getTasks(List<String> taskIds, Set<TaskField> fields) {
+        if (taskIds == null || taskIds.isEmpty()) return Collections.emptyList();
+
+        List<TaskField> columns = columns(fields);
+        boolean resolve = !Collections.disjoint(fields, CLAIM_CHECKED);
+        int batchSize   = resolve ? CLAIM_CHECKED_READ_BATCH : BULK_READ_BATCH;
+
+        List<Task> tasks = new ArrayList<>(taskIds.size());
+        for (int from = 0; from < taskIds.size(); from += batchSize) {
+            List<String> batch = taskIds.subList(from, Math.min(from + batchSize, taskIds.size()));
+            List<String> keys  = batch.stream().map(id -> TASK_PREFIX + id).collect(Collectors.toList());
+            List<Object> rows  = readRows(keys, columns, resolve);
+            if (rows == null) continue;
+
+            IntStream indexes = IntStream.range(0, rows.size());
+            if (rows.size() > PARALLEL_PARSE_THRESHOLD) indexes = indexes.parallel();
+            indexes.mapToObj(i -> parseTask(batch.get(i), (List<?>) rows.get(i), columns))
+                    .filter(Objects::nonNull)
+                    .forEachOrdered(tasks::add);
+        }
+        return tasks;
+    }
+
+    /** The id, then the requested fields, each once. */
+    private static List<TaskField> columns(Set<TaskField> fields) {
+        List<TaskField> read = new ArrayList<>(EnumSet.of(TaskField.ID));
+        read.addAll(fields);
+        return read.stream().distinct().collect(Collectors.toList());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<Object> readRows(List<String> keys, List<TaskField> columns, boolean resolveClaimChecks) {
+        Object[] args = new Object[columns.size() + 1];
+        args[0] = resolveClaimChecks ? "1" : "0";
+        for (int i = 0; i < columns.size(); i++) {
+            args[i + 1] = columns.get(i).getFieldName();
+        }
+        return redisTemplate.execute(READ_TASKS_SCRIPT, SCRIPT_ARGS, (RedisSerializer) SCRIPT_ARGS, keys, args);
+    }
+
+    /**
+     * One read-tasks.lua row: {'h', field values..., claim-checked values...}, {'s', legacy value}
+     * or {} when missing. A claim-check reference takes the next claim-checked value, or null if
+     * those were not fetched.
+     */
+    private Task parseTask(String taskId, List<?> row, List<TaskField> columns) {
+        if (row == null || row.isEmpty()) return null;
+        try {
+            if (row.get(0) instanceof byte[] && ((byte[]) row.get(0))[0] == 's') {
+                return taskCodec.decode((byte[]) row.get(1));
+            }
+            Task task = new Task();
+            int claimChecked = columns.size() + 1;
+            for (int i = 0; i < columns.size(); i++) {
+                byte[] value = (byte[]) row.get(i + 1);
+                if (ClaimCheck.isReference(value)) {
+                    Object blob = claimChecked < row.size() ? row.get(claimChecked) : null;
+                    value = blob != null ? ClaimCheck.decompress((byte[]) blob) : null;
+                    claimChecked++;
+                }
+                hashMapper.decode(task, columns.get(i), value);
             }
+            return task;
+        } catch (IOException e) {
+            log.error("Failed to deserialize task: {}", taskId, e);
+            return null;
         }
-        return null;
     }
 
     /**
-     * Paginated task fetch — uses LRANGE with offset/limit for O(1) Redis access.
-     * Avoids loading the entire task list into memory on every request.
+     * Paginated task fetch, newest first — ZREVRANGE of the task index for the page of ids, then
+     * one read-tasks.lua call for the hashes. Two Redis round trips per page regardless of page size.
      */
     public List<Task> getAllTasks(int page, int size) {
+        return getAllTasks(page, size, ALL_FIELDS);
+    }
+
+    public List<Task> getAllTasks(int page, int size, Set<TaskField> fields) {
         long start = (long) page * size;
         long end   = start + size - 1;
-        List<String> taskIds = redisTemplate.opsForList().range(TASK_LIST, start, end);
-        if (taskIds == null) return Collections.emptyList();
-        return taskIds.stream()
-                .map(this::getTask)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        List<String> ids = indexRange(start, end);
+        List<Task> tasks = getTasks(ids, fields);
+        pruneExpired(TASK_INDEX, ids, tasks);
+        return tasks;
     }
 
-    /** Unpaginated overload — used internally for statistics. */
+    /** Unpaginated overload — loads every task, prefer the paginated form. */
     public List<Task> getAllTasks() {
-        List<String> taskIds = redisTemplate.opsForList().range(TASK_LIST, 0, -1);
-        if (taskIds == null) return Collections.emptyList();
-        return taskIds.stream()
-                .map(this::getTask)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        return getTasks(indexRange(0, -1));
+    }
+
+    private List<String> indexRange(long start, long end) {
+        Set<String> ids = redisTemplate.opsForZSet().reverseRange(TASK_INDEX, start, end);
+        return ids != null ? new ArrayList<>(ids) : Collections.emptyList();
     }
 
-    public List<Task> getTasksByStatus(Task.TaskStatus status) {
-        return getAllTasks().stream()
-                .filter(task -> task.getStatus() == status)
-                .collect(Collectors.toList());
+    /**
+     * Cursor-paginated, newest first, backed by the per-status sorted set — only the ids
+     * on the requested page are read, however many tasks exist in other statuses.
+     * The cursor is "createdAtMillis:taskId" of the last task returned; members with the
+     * same score sort by id, so ties across a page boundary are neither skipped nor repeated.
+     */
+    public TaskPage getTasksByStatus(Task.TaskStatus status, String cursor, int size) {
+        return getTasksByStatus(status, cursor, size, ALL_FIELDS);
+    }
+
+    public TaskPage getTasksByStatus(Task.TaskStatus status, String cursor, int size, Set<TaskField> fields) {
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        String indexKey = STATUS_INDEX_PREFIX + status.name();
+
+        double maxScore = Double.POSITIVE_INFINITY;
+        String afterId  = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            int sep = cursor.indexOf(':');
+            if (sep <= 0) throw new IllegalArgumentException("Malformed cursor: " + cursor);
+            maxScore = Double.parseDouble(cursor.substring(0, sep));
+            afterId  = cursor.substring(sep + 1);
+        }
+
+        // Fetch one extra entry to know whether another page follows
+        List<ZSetOperations.TypedTuple<String>> entries = new ArrayList<>(limit + 1);
+        long offset = 0;
+        while (entries.size() <= limit) {
+            Set<ZSetOperations.TypedTuple<String>> batch = redisTemplate.opsForZSet()
+                    .reverseRangeByScoreWithScores(indexKey, Double.NEGATIVE_INFINITY, maxScore, offset, limit + 1);
+            if (batch == null || batch.isEmpty()) break;
+            for (ZSetOperations.TypedTuple<String> entry : batch) {
+                boolean seen = afterId != null && entry.getScore() != null && entry.getScore() == maxScore
+                        && entry.getValue() != null && entry.getValue().compareTo(afterId) >= 0;
+                if (!seen && entries.size() <= limit) entries.add(entry);
+            }
+            if (batch.size() < limit + 1) break;
+            offset += batch.size();
+        }
+
+        boolean hasMore = entries.size() > limit;
+        if (hasMore) entries = entries.subList(0, limit);
+
+        List<String> ids = entries.stream().map(ZSetOperations.TypedTuple::getValue).collect(Collectors.toList());
+        Set<TaskField> read = EnumSet.of(TaskField.STATUS);
+        read.addAll(fields);
+        List<Task> tasks = getTasks(ids, read);
+        pruneExpired(indexKey, ids, tasks);
+        // A transition can land between the index read and the MGET — drop tasks that moved on
+        tasks.removeIf(task -> task.getStatus() != status);
+
+        String nextCursor = null;
+        if (hasMore) {
+            ZSetOperations.TypedTuple<String> last = entries.get(entries.size() - 1);
+            nextCursor = last.getScore().longValue() + ":" + last.getValue();
+        }
+        return new TaskPage(tasks, nextCursor);
+    }
+
+    /**
+     * Walks every task created in [from, to] (either may be null), oldest first, and hands them to the sink
+     * {@value #BULK_READ_BATCH} at a time — from the status index when a status is given,
+     * otherwise from the task index. The walk resumes after the last (score, rank) it saw
+     * rather than at a page offset, so each batch costs the same however deep the export is,
+     * and only one batch is held in memory. Type is filtered after the fetch. A task that
+     * changes status mid-export may be missed by a status-filtered walk.
+     */
+    public void exportTasks(Task.TaskStatus status, String type, LocalDateTime from, LocalDateTime to,
+                            Set<TaskField> fields, TaskBatchSink sink) throws IOException {
+        String indexKey = status != null ? STATUS_INDEX_PREFIX + status.name() : TASK_INDEX;
+        Set<TaskField> read = EnumSet.of(TaskField.STATUS, TaskField.TYPE);
+        read.addAll(fields);
+
+        double max  = to != null ? epochMillis(to) : Double.POSITIVE_INFINITY;
+        double min  = from != null ? epochMillis(from) : Double.NEGATIVE_INFINITY;
+        long   skip = 0; // members at score min already exported
+        while (true) {
+            Set<ZSetOperations.TypedTuple<String>> batch = redisTemplate.opsForZSet()
+                    .rangeByScoreWithScores(indexKey, min, max, skip, BULK_READ_BATCH);
+            if (batch == null || batch.isEmpty()) return;
+
+            List<String> ids = new ArrayList<>(batch.size());
+            double last = min;
+            long ties = 0;
+            for (ZSetOperations.TypedTuple<String> entry : batch) {
+                ids.add(entry.getValue());
+                double score = entry.getScore() != null ? entry.getScore() : 0;
+                ties = score == last ? ties + 1 : 1;
+                last = score;
+            }
+            List<Task> tasks = getTasks(ids, read);
+            tasks.removeIf(task -> (status != null && task.getStatus() != status)
+                    || (type != null && !type.equals(task.getType())));
+            if (!tasks.isEmpty()) sink.accept(tasks);
+
+            if (batch.size() < BULK_READ_BATCH) return;
+            skip = last == min ? skip + ties : ties;
+            min  = last;
+        }
+    }
+
+    /** Receives export batches; an IOException (e.g. the client went away) stops the walk. */
+    @FunctionalInterface
+    public interface TaskBatchSink {
+        void accept(List<Task> tasks) throws IOException;
+    }
+
+    /** Index entries whose task key has expired are removed as they are encountered. */
+    private void pruneExpired(String indexKey, List<String> ids, List<Task> found) {
+        if (found.size() == ids.size()) return;
+        Set<String> foundIds = found.stream().map(Task::getId).collect(Collectors.toSet());
+        Object[] expired = ids.stream().filter(id -> !foundIds.contains(id)).toArray();
+        redisTemplate.opsForZSet().remove(indexKey, expired);
     }
 
     // ── Update ────────────────────────────────────────────────────────────────
 
-    public void updateTask(Task task) {
+    /**
+     * Writes the given fields of the task hash — only what the transition changed, so the payload
+     * and result are not rewritten on every status change. No fields means a full write.
+     * A key that is missing or still a legacy string value gets a full write instead, merging the
+     * changed fields onto the stored task.
+     */
+    public void updateTask(Task task, TaskField... changed) {
         try {
-            String taskJson = objectMapper.writeValueAsString(task);
-            redisTemplate.opsForValue().set(TASK_PREFIX + task.getId(), taskJson, 24, TimeUnit.HOURS);
+            Set<TaskField> fields = changed.length == 0 ? ALL_FIELDS : EnumSet.copyOf(Arrays.asList(changed));
+            if (!saveTask(task, fields, fields == ALL_FIELDS)) {
+                Task stored = getTask(task.getId());
+                if (stored != null) {
+                    for (TaskField field : fields) {
+                        hashMapper.decode(stored, field, hashMapper.encode(task, field));
+                    }
+                    task = stored;
+                }
+                saveTask(task, ALL_FIELDS, true);
+            }
             log.debug("Task updated: {} status={}", task.getId(), task.getStatus());
-        } catch (JsonProcessingException e) {
+        } catch (IOException e) {
             log.error("Failed to update task: {}", task.getId(), e);
         }
     }
 
+    /**
+     * updateTask for many tasks in one pipeline — used by the worker's write-behind buffer.
+     * changed.get(i) are the fields to write for tasks.get(i); the full field set means a full
+     * write. When workerId is non-null the worker's registration is refreshed in the same round
+     * trip. Keys that need the legacy merge fall back to updateTask one by one.
+     */
+    public void updateTasks(List<Task> tasks, List<Set<TaskField>> changed, String workerId, String workerStatus) {
+        Object[][] saveArgs = new Object[tasks.size()][];
+        for (int i = 0; i < tasks.size(); i++) {
+            try {
+                Set<TaskField> fields = changed.get(i);
+                saveArgs[i] = saveTaskArgs(tasks.get(i), fields, fields.containsAll(ALL_FIELDS), 0);
+            } catch (IOException e) {
+                log.error("Failed to update task: {}", tasks.get(i).getId(), e);
+            }
+        }
+        byte[] workerKey   = workerId != null ? redisTemplate.getStringSerializer().serialize(WORKER_PREFIX + workerId) : null;
+        byte[] workerValue = workerId != null ? workerValue(workerId, workerStatus) : null;
+
+        List<Object> results = saveTasksPipelined(tasks, saveArgs, null, connection -> {
+            if (workerValue != null) {
+                connection.stringCommands().set(workerKey, workerValue,
+                        Expiration.from(WORKER_TTL_MINUTES, TimeUnit.MINUTES), RedisStringCommands.SetOption.upsert());
+            }
+        });
+
+        // results[0] is the SCRIPT LOAD reply, then one reply per script call in task order
+        int reply = 1;
+        for (int i = 0; i < tasks.size(); i++) {
+            if (saveArgs[i] == null) continue;
+            Object saved = results.get(reply++);
+            if (saved instanceof Long && (Long) saved < 0) {
+                updateTask(tasks.get(i), changed.get(i).toArray(new TaskField[0]));
+            }
+        }
+        log.debug("Task updates flushed: {} tasks", tasks.size());
+    }
+
+    /**
+     * Single write path for task hashes — moves the task between status counters in the same
+     * script. Returns false when a partial write found no hash to update.
+     */
+    private boolean saveTask(Task task, Set<TaskField> fields, boolean full) throws IOException {
+        return saveTask(task, fields, full, null, 0) >= 0;
+    }
+
+    /**
+     * The save-task.lua result: 1, -1 (partial write, no hash) or 0 (idempotency key taken).
+     * A non-zero outboxClaim queues the task in the outbox with that score, in the same step.
+     */
+    private long saveTask(Task task, Set<TaskField> fields, boolean full, String idempotencyKey, long outboxClaim)
+            throws IOException {
+        Long saved = redisTemplate.execute(SAVE_TASK_SCRIPT, SCRIPT_ARGS, LONG_RESULT,
+                saveTaskKeys(task, idempotencyKey), saveTaskArgs(task, fields, full, outboxClaim));
+        nearCache.invalidate(task.getId());
+        return saved != null ? saved : 1;
+    }
+
+    /**
+     * Same script as saveTask for many tasks in one pipeline, followed by whatever else the
+     * caller needs in the same round trip. SCRIPT LOAD goes first in the pipeline so the
+     * EVALSHAs behind it cannot hit NOSCRIPT. Null saveArgs entries are skipped, and
+     * idempotencyKeys may be null when no task has one.
+     */
+    private List<Object> saveTasksPipelined(List<Task> tasks, Object[][] saveArgs, List<String> idempotencyKeys,
+                                            Consumer<RedisConnection> then) {
+        byte[] script = redisTemplate.getStringSerializer().serialize(SAVE_TASK_SCRIPT.getScriptAsString());
+        for (int i = 0; i < tasks.size(); i++) {
+            if (saveArgs[i] != null) nearCache.invalidate(tasks.get(i).getId());
+        }
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.scriptingCommands().scriptLoad(script);
+            for (int i = 0; i < tasks.size(); i++) {
+                if (saveArgs[i] == null) continue;
+                List<String> keys = saveTaskKeys(tasks.get(i), idempotencyKeys != null ? idempotencyKeys.get(i) : null);
+                byte[][] keysAndArgs = Stream.concat(keys.stream(), Arrays.stream(saveArgs[i]))
+                        .map(SCRIPT_ARGS::serialize)
+                        .toArray(byte[][]::new);
+                connection.scriptingCommands().evalSha(SAVE_TASK_SCRIPT.getSha1(), ReturnType.INTEGER, keys.size(), keysAndArgs);
+            }
+            then.accept(connection);
+            return null;
+        });
+    }
+
+    private List<String> saveTaskKeys(Task task, String idempotencyKey) {
+        return idempotencyKey != null
+                ? Arrays.asList(TASK_PREFIX + task.getId(), TASK_STATS, TASK_INDEX, OUTBOX, IDEMPOTENCY_PREFIX + idempotencyKey)
+                : Arrays.asList(TASK_PREFIX + task.getId(), TASK_STATS, TASK_INDEX, OUTBOX);
+    }
+
+    /**
+     * Header arguments, the invalidation channel, the outbox score ('' when outboxClaim is 0),
+     * the counts of fields to set and of claim-checked
+     * values, field/value pairs, field/compressed value pairs, then the null fields to delete.
+     * A payload or result above the claim-check threshold is set as a reference in the hash and
+     * its value stored gzipped under its own key.
+     */
+    private Object[] saveTaskArgs(Task task, Set<TaskField> fields, boolean full, long outboxClaim) throws IOException {
+        List<Object> set     = new ArrayList<>(fields.size() * 2);
+        List<Object> offload = new ArrayList<>(0);
+        List<Object> unset   = new ArrayList<>();
+        for (TaskField field : fields) {
+            byte[] value = hashMapper.encode(task, field);
+            if (value == null) {
+                unset.add(field.getFieldName());
+                continue;
+            }
+            set.add(field.getFieldName());
+            if (CLAIM_CHECKED.contains(field) && claimCheck.exceeds(value)) {
+                set.add(ClaimCheck.reference(field.getFieldName()));
+                offload.add(field.getFieldName());
+                offload.add(ClaimCheck.compress(value));
+            } else {
+                set.add(value);
+            }
+        }
+        List<Object> args = new ArrayList<>(9 + set.size() + offload.size() + unset.size());
+        args.add(String.valueOf(TASK_TTL_SECONDS));
+        args.add(STATUS_INDEX_PREFIX);
+        args.add(task.getCreatedAt() != null ? String.valueOf(indexScore(task)) : "");
+        args.add(task.getId());
+        args.add(full ? FULL_WRITE : PARTIAL_WRITE);
+        args.add(TaskNearCache.INVALIDATION_CHANNEL);
+        args.add(outboxClaim != 0 ? String.valueOf(outboxClaim) : "");
+        args.add(String.valueOf(set.size() / 2));
+        args.add(String.valueOf(offload.size() / 2));
+        args.addAll(set);
+        args.addAll(offload);
+        args.addAll(unset);
+        return args.toArray();
+    }
+
+    private static long indexScore(Task task) {
+        return task.getCreatedAt() != null ? epochMillis(task.getCreatedAt()) : 0;
+    }
+
+    private static long epochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
     // ── Statistics ────────────────────────────────────────────────────────────
 
+    /**
+     * O(1) — reads the counters maintained by the save/delete scripts instead of scanning tasks.
+     * Counters can drift when task keys expire; {@link #reconcileStatistics()} rebuilds them.
+     */
     public Map<String, Object> getTaskStatistics() {
-        List<Task> allTasks = getAllTasks();
-
-        long completed = allTasks.stream().filter(t -> t.getStatus() == Task.TaskStatus.COMPLETED).count();
-        long failed    = allTasks.stream().filter(t -> t.getStatus() == Task.TaskStatus.FAILED).count();
-        long pending   = allTasks.stream().filter(t -> t.getStatus() == Task.TaskStatus.PENDING).count();
-        long running   = allTasks.stream().filter(t ->
-                t.getStatus() == Task.TaskStatus.PROCESSING ||
-                t.getStatus() == Task.TaskStatus.RETRYING).count();
-        // CANCELLED is now its own status — correctly separated from FAILED
-        long cancelled = allTasks.stream().filter(t -> t.getStatus() == Task.TaskStatus.CANCELLED).count();
-        long paused    = allTasks.stream().filter(t -> t.getStatus() == Task.TaskStatus.PAUSED).count();
+        Map<Object, Object> counters = redisTemplate.opsForHash().entries(TASK_STATS);
 
-        double avgExecutionTime = allTasks.stream()
-                .filter(t -> t.getStatus() == Task.TaskStatus.COMPLETED)
-                .mapToLong(Task::getExecutionTimeMs)
-                .average()
-                .orElse(0.0);
+        long completed = counter(counters, Task.TaskStatus.COMPLETED.name());
+        long running   = counter(counters, Task.TaskStatus.PROCESSING.name())
+                       + counter(counters, Task.TaskStatus.RETRYING.name());
+        long completedTime = counter(counters, STAT_COMPLETED_TIME);
 
         Map<String, Object> stats = new HashMap<>();
-        stats.put("total",              allTasks.size());
+        stats.put("total",              counter(counters, STAT_TOTAL));
         stats.put("completed",          completed);
-        stats.put("failed",             failed);
-        stats.put("pending",            pending);
+        stats.put("failed",             counter(counters, Task.TaskStatus.FAILED.name()));
+        stats.put("pending",            counter(counters, Task.TaskStatus.PENDING.name()));
         stats.put("running",            running);
-        stats.put("cancelled",          cancelled);
-        stats.put("paused",             paused);
-        stats.put("avgExecutionTimeMs", avgExecutionTime);
+        // CANCELLED is now its own status — correctly separated from FAILED
+        stats.put("cancelled",          counter(counters, Task.TaskStatus.CANCELLED.name()));
+        stats.put("paused",             counter(counters, Task.TaskStatus.PAUSED.name()));
+        stats.put("avgExecutionTimeMs", completed > 0 ? (double) completedTime / completed : 0.0);
         return stats;
     }
 
+    private static long counter(Map<Object, Object> counters, String field) {
+        Object value = counters.get(field);
+        return value != null ? Math.max(0, Long.parseLong(value.toString())) : 0;
+    }
+
+    /**
+     * Rebuilds the statistics hash from the tasks that still exist, in MGET batches, and
+     * re-adds each task to its status index (backfills tasks written before the index existed).
+     * Transitions that land between the scan and the write are lost until the next run,
+     * so this corrects drift rather than guaranteeing exact counts.
+     */
+    public void reconcileStatistics() {
+        Map<String, Long> counters = new HashMap<>();
+        counters.put(STAT_TOTAL, 0L);
+        counters.put(STAT_COMPLETED_TIME, 0L);
+        for (Task.TaskStatus status : Task.TaskStatus.values()) {
+            counters.put(status.name(), 0L);
+        }
+
+        long start = 0;
+        List<String> taskIds;
+        do {
+            taskIds = indexRange(start, start + BULK_READ_BATCH - 1);
+            List<Task> tasks = getTasks(taskIds, EnumSet.of(TaskField.STATUS, TaskField.CREATED_AT, TaskField.EXECUTION_TIME_MS));
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) {
+                    for (Task task : tasks) {
+                        operations.opsForZSet().add(STATUS_INDEX_PREFIX + task.getStatus(), task.getId(), indexScore(task));
+                    }
+                    return null;
+                }
+            });
+            for (Task task : tasks) {
+                counters.merge(STAT_TOTAL, 1L, Long::sum);
+                counters.merge(String.valueOf(task.getStatus()), 1L, Long::sum);
+                if (task.getStatus() == Task.TaskStatus.COMPLETED) {
+                    counters.merge(STAT_COMPLETED_TIME, task.getExecutionTimeMs(), Long::sum);
+                }
+            }
+            start += BULK_READ_BATCH;
+        } while (taskIds.size() == BULK_READ_BATCH);
+
+        Map<String, String> fields = new HashMap<>();
+        counters.forEach((field, value) -> fields.put(field, String.valueOf(value)));
+        redisTemplate.opsForHash().putAll(TASK_STATS, fields);
+        log.info("Task statistics reconciled: {}", counters);
+    }
+
+    // ── Index maintenance ─────────────────────────────────────────────────────
+
+    /**
+     * Drops task and status index entries whose task key has expired, so the indexes hold about
+     * one TTL's worth of ids at steady state. Only entries created more than a TTL ago can have
+     * expired, so the scan covers just that oldest slice, {@value #COMPACT_BATCH} entries per
+     * script call. Ids still in the legacy list are moved into the index first. Returns the
+     * number of entries removed.
+     */
+    public long compactIndexes() {
+        migrateLegacyList();
+
+        long cutoff = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(TASK_TTL_SECONDS);
+        long removed = compactIndex(TASK_INDEX, cutoff);
+        for (Task.TaskStatus status : Task.TaskStatus.values()) {
+            removed += compactIndex(STATUS_INDEX_PREFIX + status.name(), cutoff);
+        }
+        log.info("Task indexes compacted: {} expired entries removed, {} ids indexed",
+                removed, redisTemplate.opsForZSet().zCard(TASK_INDEX));
+        return removed;
+    }
+
+    private long compactIndex(String indexKey, long cutoff) {
+        long removed = 0;
+        long offset  = 0;
+        List<?> result;
+        do {
+            result = redisTemplate.execute(COMPACT_INDEX_SCRIPT, Collections.singletonList(indexKey),
+                    String.valueOf(cutoff), String.valueOf(offset), String.valueOf(COMPACT_BATCH), TASK_PREFIX);
+            if (result == null) break;
+            long examined = ((Number) result.get(0)).longValue();
+            long dropped  = ((Number) result.get(1)).longValue();
+            removed += dropped;
+            // Survivors stay in place, so the next call starts past them
+            offset  += examined - dropped;
+        } while (((Number) result.get(0)).intValue() == COMPACT_BATCH);
+        return removed;
+    }
+
+    /**
+     * Moves the pre-index tasks:all list into the index, oldest first. Each chunk is read and
+     * trimmed off in one MULTI, so nodes compacting at the same time never take the same ids;
+     * ids whose task has expired are dropped on the way.
+     */
+    @SuppressWarnings("unchecked")
+    private void migrateLegacyList() {
+        long moved = 0;
+        while (Boolean.TRUE.equals(redisTemplate.hasKey(LEGACY_TASK_LIST))) {
+            List<Object> chunk = redisTemplate.execute(new SessionCallback<List<Object>>() {
+                @Override
+                public List<Object> execute(RedisOperations operations) {
+                    operations.multi();
+                    operations.opsForList().range(LEGACY_TASK_LIST, -BULK_READ_BATCH, -1);
+                    operations.opsForList().trim(LEGACY_TASK_LIST, 0, -BULK_READ_BATCH - 1);
+                    return operations.exec();
+                }
+            });
+            List<String> ids = chunk != null && !chunk.isEmpty() ? (List<String>) chunk.get(0) : null;
+            if (ids == null || ids.isEmpty()) break;
+
+            Set<ZSetOperations.TypedTuple<String>> entries = getTasks(ids, EnumSet.of(TaskField.CREATED_AT)).stream()
+                    .map(task -> new DefaultTypedTuple<>(task.getId(), (double) indexScore(task)))
+                    .collect(Collectors.toSet());
+            if (!entries.isEmpty()) {
+                redisTemplate.opsForZSet().add(TASK_INDEX, entries);
+            }
+            moved += entries.size();
+        }
+        if (moved > 0) {
+            log.info("Legacy task list migrated: {} ids moved into {}", moved, TASK_INDEX);
+        }
+    }
+
+    // ── Outbox relay ──────────────────────────────────────────────────────────
+
+    /**
+     * One relay pass over the outbox. First releases the entries whose direct send has been
+     * acked since the last pass, then claims up to batchSize entries whose sender's claim ran
+     * out — a failed send, or a node that died before the ack — and publishes them as one
+     * producer batch. Entries are removed once acked, or when their task has expired or moved
+     * past PENDING; unacked ones become due again after the claim. Returns the number claimed.
+     */
+    public int relayOutbox(int batchSize) {
+        releaseOutbox(drainAcked());
+
+        long now = System.currentTimeMillis();
+        long claim = now + OUTBOX_CLAIM_MS;
+        @SuppressWarnings("unchecked")
+        List<String> ids = redisTemplate.execute(CLAIM_OUTBOX_SCRIPT, Collections.singletonList(OUTBOX),
+                String.valueOf(now), String.valueOf(batchSize), String.valueOf(claim));
+        if (ids == null || ids.isEmpty()) return 0;
+
+        Set<String> stale = new HashSet<>(ids);
+        List<Task> toSend = new ArrayList<>(ids.size());
+        for (Task task : getTasks(ids, MESSAGE_FIELDS)) {
+            if (task.getStatus() == Task.TaskStatus.PENDING) {
+                toSend.add(task);
+                stale.remove(task.getId());
+            }
+        }
+        List<Map.Entry<String, Long>> done = new ArrayList<>(ids.size());
+        stale.forEach(id -> done.add(new AbstractMap.SimpleImmutableEntry<>(id, claim)));
+
+        List<ListenableFuture<SendResult<String, byte[]>>> sends = new ArrayList<>(toSend.size());
+        for (Task task : toSend) {
+            try {
+                sends.add(kafkaTemplate.send(topicFor(task), task.getId(), encodeMessage(task)));
+            } catch (IOException e) {
+                log.error("Failed to serialize outbox task: {}", task.getId(), e);
+                sends.add(null);
+                done.add(new AbstractMap.SimpleImmutableEntry<>(task.getId(), claim));
+            } catch (RuntimeException e) {
+                // Producer unavailable — the rest stay claimed and are retried after the claim
+                log.warn("Outbox relay pass stopped, the producer rejected a send: {}", e.getMessage());
+                break;
+            }
+        }
+        kafkaTemplate.flush();
+        int published = 0;
+        long deadline = ackDeadline();
+        for (int i = 0; i < sends.size(); i++) {
+            if (sends.get(i) == null) continue;
+            if (awaitAck(toSend.get(i), sends.get(i), deadline)) {
+                done.add(new AbstractMap.SimpleImmutableEntry<>(toSend.get(i).getId(), claim));
+                published++;
+            }
+        }
+        releaseOutbox(done);
+        log.info("Outbox relay published {} tasks ({} claimed, {} stale)", published, ids.size(), stale.size());
+        return ids.size();
+    }
+
+    /** Tasks stored but not yet acked by the broker, including ones a sender still owns. */
+    public long outboxSize() {
+        Long size = redisTemplate.opsForZSet().zCard(OUTBOX);
+        return size != null ? size : 0;
+    }
+
+    private List<Map.Entry<String, Long>> drainAcked() {
+        List<Map.Entry<String, Long>> acked = new ArrayList<>();
+        Map.Entry<String, Long> entry;
+        while ((entry = outboxAcked.poll()) != null) {
+            acked.add(entry);
+        }
+        return acked;
+    }
+
+    private void releaseOutbox(List<Map.Entry<String, Long>> entries) {
+        if (entries.isEmpty()) return;
+        Object[] args = new Object[entries.size() * 2];
+        for (int i = 0; i < entries.size(); i++) {
+            args[2 * i]     = entries.get(i).getKey();
+            args[2 * i + 1] = String.valueOf(entries.get(i).getValue());
+        }
+        redisTemplate.execute(RELEASE_OUTBOX_SCRIPT, Collections.singletonList(OUTBOX), args);
+    }
+
     // ── Workers ───────────────────────────────────────────────────────────────
 
     public void registerWorker(String workerId, String status) {
+        byte[] workerValue = workerValue(workerId, status);
+        if (workerValue != null) {
+            redisTemplate.opsForValue().set(WORKER_PREFIX + workerId,
+                    new String(workerValue, StandardCharsets.UTF_8), WORKER_TTL_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+
+    private byte[] workerValue(String workerId, String status) {
         Map<String, Object> workerInfo = new HashMap<>();
         workerInfo.put("id", workerId);
         workerInfo.put("status", status);
         workerInfo.put("lastSeen", LocalDateTime.now().toString());
-
         try {
-            String workerJson = objectMapper.writeValueAsString(workerInfo);
-            redisTemplate.opsForValue().set(WORKER_PREFIX + workerId, workerJson, 5, TimeUnit.MINUTES);
+            return objectMapper.writeValueAsBytes(workerInfo);
         } catch (JsonProcessingException e) {
             log.error("Failed to register worker: {}", workerId, e);
+            return null;
         }
     }
 
@@ -203,12 +1082,12 @@ public class TaskService {
      * CANCELLED = deliberate user action.
      */
     public boolean cancelTask(String taskId) {
-        Task task = getTask(taskId);
+        Task task = getTask(taskId, EnumSet.of(TaskField.STATUS, TaskField.CREATED_AT));
         if (task == null) return false;
         Task.TaskStatus s = task.getStatus();
         if (s == Task.TaskStatus.PENDING || s == Task.TaskStatus.PROCESSING || s == Task.TaskStatus.RETRYING) {
             task.setStatus(Task.TaskStatus.CANCELLED);
-            updateTask(task);
+            updateTask(task, TaskField.STATUS);
             log.info("Task cancelled by user: {}", taskId);
             return true;
         }
@@ -216,12 +1095,12 @@ public class TaskService {
     }
 
     public boolean pauseTask(String taskId) {
-        Task task = getTask(taskId);
+        Task task = getTask(taskId, EnumSet.of(TaskField.STATUS, TaskField.CREATED_AT));
         if (task == null) return false;
         Task.TaskStatus s = task.getStatus();
         if (s == Task.TaskStatus.PENDING || s == Task.TaskStatus.PROCESSING) {
             task.setStatus(Task.TaskStatus.PAUSED);
-            updateTask(task);
+            updateTask(task, TaskField.STATUS);
             return true;
         }
         return false;
@@ -233,21 +1112,26 @@ public class TaskService {
      * Also allows retrying CANCELLED tasks, not just FAILED ones.
      */
     public boolean retryTask(String taskId) {
-        Task task = getTask(taskId);
+        Task task = getTask(taskId, MESSAGE_FIELDS);
         if (task == null) return false;
         Task.TaskStatus s = task.getStatus();
         if (s == Task.TaskStatus.FAILED || s == Task.TaskStatus.CANCELLED) {
             task.setStatus(Task.TaskStatus.PENDING);
             task.setRetryCount(0);
             task.setError(null);
-            updateTask(task);
+            TaskField[] changed = {TaskField.STATUS, TaskField.RETRY_COUNT, TaskField.ERROR};
 
             try {
-                String taskJson  = objectMapper.writeValueAsString(task);
-                String topicName = TASK_TOPIC + "-" + task.getPriority().name().toLowerCase();
-                kafkaTemplate.send(topicName, task.getId(), taskJson);
+                long claim = outboxClaim();
+                if (saveTask(task, EnumSet.copyOf(Arrays.asList(changed)), false, null, claim) < 0) {
+                    // Legacy value: merged and written in full first, then queued
+                    updateTask(task, changed);
+                    redisTemplate.opsForZSet().add(OUTBOX, taskId, claim);
+                }
+                String topicName = topicFor(task);
+                sendClaimed(topicName, task, encodeMessage(task), claim);
                 log.info("Task re-enqueued: {} -> {}", taskId, topicName);
-            } catch (JsonProcessingException e) {
+            } catch (IOException e) {
                 log.error("Failed to re-enqueue task: {}", taskId, e);
             }
             return true;
@@ -256,10 +1140,10 @@ public class TaskService {
     }
 
     public boolean deleteTask(String taskId) {
-        List<String> taskIds = redisTemplate.opsForList().range(TASK_LIST, 0, -1);
-        if (taskIds == null || !taskIds.contains(taskId)) return false;
-        redisTemplate.delete(TASK_PREFIX + taskId);
-        redisTemplate.opsForList().remove(TASK_LIST, 0, taskId);
-        return true;
+        Long deleted = redisTemplate.execute(DELETE_TASK_SCRIPT,
+                Arrays.asList(TASK_PREFIX + taskId, TASK_STATS, TASK_INDEX), taskId, STATUS_INDEX_PREFIX,
+                TaskNearCache.INVALIDATION_CHANNEL);
+        nearCache.invalidate(taskId);
+        return deleted != null && deleted > 0;
     }
 }
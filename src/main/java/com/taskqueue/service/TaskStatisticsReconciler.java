@@ -0,0 +1,44 @@
+package com.taskqueue.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Periodically rebuilds the task statistics counters so drift (e.g. from task keys
+ * expiring after 24h) does not accumulate. A Redis lock held for half the interval
+ * keeps the nodes of a cluster from all rebuilding at once.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TaskStatisticsReconciler {
+
+    private static final String RECONCILE_LOCK = "tasks:stats:reconcile-lock";
+
+    private final TaskService taskService;
+    private final RedisTemplate<String, String> redisTemplate;
+
+    @Value("${task.stats.reconcile-interval-ms:600000}")
+    private long intervalMs;
+
+    @Scheduled(initialDelayString = "${task.stats.reconcile-interval-ms:600000}",
+               fixedDelayString   = "${task.stats.reconcile-interval-ms:600000}")
+    public void reconcile() {
+        Boolean acquired = redisTemplate.opsForValue().setIfAbsent(RECONCILE_LOCK, "1", Duration.ofMillis(intervalMs / 2));
+        if (!Boolean.TRUE.equals(acquired)) {
+            log.debug("Statistics reconcile skipped — another node holds the lock");
+            return;
+        }
+        try {
+            taskService.reconcileStatistics();
+        } catch (Exception e) {
+            log.error("Failed to reconcile task statistics", e);
+        }
+    }
+}
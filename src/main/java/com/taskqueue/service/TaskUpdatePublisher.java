@@ -0,0 +1,234 @@
+package com.taskqueue.service;
+
+import com.taskqueue.Task;
+import com.taskqueue.model.TaskField;
+import com.taskqueue.model.TaskUpdateBatch;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Conflated, subscription-filtered task update stream for the dashboards.
+ *
+ * publish() records only the changed fields of a task; repeated updates to the same id within
+ * one conflation window merge into a single delta (latest values win). Every window, flush()
+ * sends one TaskUpdateBatch per subscribed destination:
+ *
+ *   /topic/task-updates              every delta
+ *   /topic/task-updates/type/{type}  deltas of one task type
+ *   /topic/task-updates/task/{id}    deltas of one task
+ *
+ * Destinations nobody subscribes to are skipped — subscriptions are counted from the STOMP
+ * session events. Each destination has its own seq; a client subscribes to the topic, then
+ * to the matching /app snapshot (TaskStreamController), applies batches with seq above the
+ * snapshot's, and requests a new snapshot if it sees a gap. Task state is written to Redis
+ * before it is published, so a snapshot read after taking the seq already contains every
+ * delta at or below it. Sequences and subscriptions are per node, like the broker itself.
+ *
+ * Deltas never carry the payload, nor a result above the claim-check threshold; such fields
+ * are listed under "offloaded" instead, for the client to fetch with GET /tasks/{id}.
+ */
+@Component
+@Slf4j
+public class TaskUpdatePublisher {
+
+    public static final String ALL_DESTINATION = "/topic/task-updates";
+    public static final String TYPE_PREFIX     = ALL_DESTINATION + "/type/";
+    public static final String TASK_PREFIX     = ALL_DESTINATION + "/task/";
+
+    // Same rendering as the @JsonFormat on Task, so deltas and snapshots agree
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public static final String OFFLOADED = "offloaded";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ClaimCheck claimCheck;
+
+    private final Object lock = new Object();
+    private Map<String, Map<String, Object>> pending = new LinkedHashMap<>();
+    private final Map<String, Integer> subscribers = new HashMap<>();
+    private final Map<String, String> subscriptions = new HashMap<>(); // session/subscription -> destination
+    private final Map<String, Long> sequences = new HashMap<>();
+
+    public TaskUpdatePublisher(SimpMessagingTemplate messagingTemplate,
+                               @Value("${task.claim-check.threshold-bytes:16384}") int claimCheckThresholdBytes) {
+        this.messagingTemplate = messagingTemplate;
+        this.claimCheck        = new ClaimCheck(claimCheckThresholdBytes);
+    }
+
+    /** Queues a delta with the given fields of the task; id and type are always included. */
+    public void publish(Task task, Set<TaskField> fields) {
+        synchronized (lock) {
+            Map<String, Object> delta = pending.computeIfAbsent(task.getId(), id -> new LinkedHashMap<>());
+            delta.put(TaskField.ID.getFieldName(), task.getId());
+            if (task.getType() != null) {
+                delta.put(TaskField.TYPE.getFieldName(), task.getType());
+            }
+            for (TaskField field : fields) {
+                if (isOffloaded(task, field)) {
+                    delta.remove(field.getFieldName());
+                    @SuppressWarnings("unchecked")
+                    Set<String> offloaded = (Set<String>) delta.computeIfAbsent(OFFLOADED, k -> new TreeSet<String>());
+                    offloaded.add(field.getFieldName());
+                } else {
+                    delta.put(field.getFieldName(), fieldValue(task, field));
+                    Set<?> offloaded = (Set<?>) delta.get(OFFLOADED);
+                    if (offloaded != null && offloaded.remove(field.getFieldName()) && offloaded.isEmpty()) {
+                        delta.remove(OFFLOADED);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isOffloaded(Task task, TaskField field) {
+        return (field == TaskField.PAYLOAD && task.getPayload() != null)
+                || (field == TaskField.RESULT && claimCheck.exceeds(task.getResult()));
+    }
+
+    /** Queues a removal of the task from client views. */
+    public void publishDeleted(Task task) {
+        synchronized (lock) {
+            Map<String, Object> delta = new LinkedHashMap<>();
+            delta.put(TaskField.ID.getFieldName(), task.getId());
+            if (task.getType() != null) {
+                delta.put(TaskField.TYPE.getFieldName(), task.getType());
+            }
+            delta.put("deleted", true);
+            pending.put(task.getId(), delta);
+        }
+    }
+
+    /** Seq of the last batch sent to the destination — the base for a snapshot. */
+    public long currentSeq(String destination) {
+        synchronized (lock) {
+            return sequences.getOrDefault(destination, 0L);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${task.updates.conflation-ms:250}")
+    public void flush() {
+        Map<String, List<Map<String, Object>>> routed = new LinkedHashMap<>();
+        synchronized (lock) {
+            if (pending.isEmpty()) return;
+            Map<String, Map<String, Object>> batch = pending;
+            pending = new LinkedHashMap<>();
+
+            for (Map<String, Object> delta : batch.values()) {
+                route(routed, ALL_DESTINATION, delta);
+                Object type = delta.get(TaskField.TYPE.getFieldName());
+                if (type != null) {
+                    route(routed, TYPE_PREFIX + type, delta);
+                }
+                route(routed, TASK_PREFIX + delta.get(TaskField.ID.getFieldName()), delta);
+            }
+        }
+
+        // Only this scheduled method sends, so batches leave each destination in seq order
+        routed.forEach((destination, deltas) -> {
+            long seq;
+            synchronized (lock) {
+                seq = sequences.merge(destination, 1L, Long::sum);
+            }
+            try {
+                messagingTemplate.convertAndSend(destination, new TaskUpdateBatch(seq, deltas));
+            } catch (Exception e) {
+                log.error("Failed to send task updates to {}", destination, e);
+            }
+        });
+    }
+
+    private void route(Map<String, List<Map<String, Object>>> routed, String destination, Map<String, Object> delta) {
+        if (subscribers.containsKey(destination)) {
+            routed.computeIfAbsent(destination, d -> new ArrayList<>()).add(delta);
+        }
+    }
+
+    // ── Subscription tracking ─────────────────────────────────────────────────
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor headers = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = headers.getDestination();
+        if (destination == null || !destination.startsWith(ALL_DESTINATION)) return;
+        synchronized (lock) {
+            subscriptions.put(subscriptionKey(headers), destination);
+            subscribers.merge(destination, 1, Integer::sum);
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor headers = StompHeaderAccessor.wrap(event.getMessage());
+        synchronized (lock) {
+            unsubscribe(subscriptionKey(headers));
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        String prefix = event.getSessionId() + "/";
+        synchronized (lock) {
+            new ArrayList<>(subscriptions.keySet()).stream()
+                    .filter(key -> key.startsWith(prefix))
+                    .forEach(this::unsubscribe);
+        }
+    }
+
+    private void unsubscribe(String key) {
+        String destination = subscriptions.remove(key);
+        if (destination == null) return;
+        if (subscribers.merge(destination, -1, Integer::sum) <= 0) {
+            subscribers.remove(destination);
+            // Per-task destinations come and go; a new subscriber starts from a fresh snapshot
+            if (destination.startsWith(TASK_PREFIX)) {
+                sequences.remove(destination);
+            }
+        }
+    }
+
+    private static String subscriptionKey(StompHeaderAccessor headers) {
+        return headers.getSessionId() + "/" + headers.getSubscriptionId();
+    }
+
+    private static Object fieldValue(Task task, TaskField field) {
+        switch (field) {
+            case ID:                return task.getId();
+            case TYPE:              return task.getType();
+            case STATUS:            return task.getStatus();
+            case WORKER_ID:         return task.getWorkerId();
+            case PAYLOAD:           return task.getPayload();
+            case RESULT:            return task.getResult();
+            case ERROR:             return task.getError();
+            case RETRY_COUNT:       return task.getRetryCount();
+            case MAX_RETRIES:       return task.getMaxRetries();
+            case PRIORITY:          return task.getPriority();
+            case CREATED_AT:        return timestamp(task.getCreatedAt());
+            case STARTED_AT:        return timestamp(task.getStartedAt());
+            case COMPLETED_AT:      return timestamp(task.getCompletedAt());
+            case EXECUTION_TIME_MS: return task.getExecutionTimeMs();
+            default: throw new IllegalArgumentException("Unmapped task field: " + field);
+        }
+    }
+
+    private static String timestamp(LocalDateTime time) {
+        return time != null ? time.format(TIMESTAMP) : null;
+    }
+}
@@ -0,0 +1,166 @@
+package com.taskqueue.worker;
+
+import com.taskqueue.Task;
+import com.taskqueue.codec.TaskCodec;
+import com.taskqueue.service.TaskService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Durable delay queue for retries — a Redis sorted set of task ids scored by due time.
+ *
+ * Replaces the in-memory ScheduledExecutorService: pending retries survive a worker restart.
+ * Every node polls; the claim script hands each due id to exactly one node, so draining is
+ * shared across the cluster without leader election. Claimed ids are only removed once the
+ * broker has acked the retry message; anything else becomes due again after the visibility
+ * timeout (at-least-once — TaskWorker's idempotency check absorbs a duplicate).
+ */
+@Component
+@Slf4j
+public class RetryQueue {
+
+    public static final String RETRY_TOPIC = "task-retry";
+
+    private static final String RETRY_QUEUE = "tasks:retry";
+
+    private static final RedisScript<List> CLAIM_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/claim-due.lua"), List.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/release-retries.lua"), Long.class);
+
+    // How long one batch waits for the broker to ack its sends — in all, not per send
+    private static final long SEND_ACK_TIMEOUT_SECONDS = 10;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final TaskService taskService;
+    private final TaskCodec taskCodec;
+    private final int batchSize;
+    private final long visibilityTimeoutMs;
+
+    public RetryQueue(RedisTemplate<String, String> redisTemplate,
+                      KafkaTemplate<String, byte[]> kafkaTemplate,
+                      TaskService taskService,
+                      TaskCodec taskCodec,
+                      @Value("${task.retry.batch-size:500}") int batchSize,
+                      @Value("${task.retry.visibility-timeout-ms:30000}") long visibilityTimeoutMs) {
+        this.redisTemplate       = redisTemplate;
+        this.kafkaTemplate       = kafkaTemplate;
+        this.taskService         = taskService;
+        this.taskCodec           = taskCodec;
+        this.batchSize           = batchSize;
+        this.visibilityTimeoutMs = visibilityTimeoutMs;
+    }
+
+    /** Schedules a (re-)publish of the task's current Redis state after the given delay. */
+    public void schedule(String taskId, long delayMs) {
+        redisTemplate.opsForZSet().add(RETRY_QUEUE, taskId, System.currentTimeMillis() + delayMs);
+    }
+
+    /** Retries scheduled but not yet published, including claimed-but-unacked ones. */
+    public long size() {
+        Long size = redisTemplate.opsForZSet().zCard(RETRY_QUEUE);
+        return size != null ? size : 0;
+    }
+
+    /**
+     * Drains everything due, one claimed batch at a time, so lateness stays around one
+     * poll interval even when thousands of retries fall due together.
+     */
+    @Scheduled(fixedDelayString = "${task.retry.poll-interval-ms:100}")
+    public void publishDue() {
+        try {
+            int published;
+            do {
+                published = publishBatch();
+            } while (published == batchSize);
+        } catch (Exception e) {
+            log.error("Failed to publish due retries", e);
+        }
+    }
+
+    /** Claims and publishes one batch; returns how many ids were claimed. */
+    int publishBatch() {
+        long now = System.currentTimeMillis();
+        long deadline = now + visibilityTimeoutMs;
+        @SuppressWarnings("unchecked")
+        List<String> ids = redisTemplate.execute(CLAIM_SCRIPT, Collections.singletonList(RETRY_QUEUE),
+                String.valueOf(now), String.valueOf(batchSize), String.valueOf(deadline));
+        if (ids == null || ids.isEmpty()) return 0;
+
+        // Ids whose task expired, was cancelled or otherwise moved on — nothing to retry.
+        // PENDING comes from lease recovery of a task that never started.
+        Set<String> stale = new HashSet<>(ids);
+        List<Task> toSend = new ArrayList<>(ids.size());
+        for (Task task : taskService.getTasks(ids, TaskService.MESSAGE_FIELDS)) {
+            Task.TaskStatus s = task.getStatus();
+            if (s == Task.TaskStatus.RETRYING || s == Task.TaskStatus.PENDING) {
+                toSend.add(task);
+                stale.remove(task.getId());
+            }
+        }
+        List<String> done = new ArrayList<>(stale);
+
+        List<ListenableFuture<SendResult<String, byte[]>>> sends = new ArrayList<>(toSend.size());
+        for (Task task : toSend) {
+            try {
+                sends.add(kafkaTemplate.send(RETRY_TOPIC, task.getId(), taskCodec.encode(task)));
+            } catch (IOException e) {
+                log.error("Failed to serialize retry for task: {}", task.getId(), e);
+                sends.add(null);
+                done.add(task.getId());
+            }
+        }
+        kafkaTemplate.flush();
+        // Once the deadline passes only sends already acked count; the rest are left claimed and
+        // become due again once the visibility timeout passes
+        long ackDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SEND_ACK_TIMEOUT_SECONDS);
+        int unacked = 0;
+        for (int i = 0; i < toSend.size(); i++) {
+            if (sends.get(i) == null) continue;
+            try {
+                sends.get(i).get(Math.max(0, ackDeadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                done.add(toSend.get(i).getId());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                unacked++;
+            } catch (TimeoutException e) {
+                unacked++;
+            } catch (ExecutionException e) {
+                log.warn("Retry publish failed for task {}, redelivering in {}ms",
+                        toSend.get(i).getId(), visibilityTimeoutMs, e);
+            }
+        }
+        if (unacked > 0) {
+            log.warn("{} retries not acked by the broker within {}s, redelivering in {}ms",
+                    unacked, SEND_ACK_TIMEOUT_SECONDS, visibilityTimeoutMs);
+        }
+
+        if (!done.isEmpty()) {
+            List<String> args = new ArrayList<>(done.size() + 1);
+            args.add(String.valueOf(deadline));
+            args.addAll(done);
+            redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(RETRY_QUEUE), args.toArray());
+        }
+        log.debug("Published {} due retries ({} claimed)", toSend.size(), ids.size());
+        return ids.size();
+    }
+}
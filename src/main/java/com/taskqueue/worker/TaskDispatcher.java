@@ -0,0 +1,466 @@
+package com.taskqueue.worker;
+
+import com.taskqueue.Task;
+import com.taskqueue.TaskQueueApplication;
+import com.taskqueue.worker.processors.GenericTaskProcessor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Priority dispatcher between the Kafka listeners and the taskExecutor pool.
+ *
+ * Listeners enqueue work here instead of on the executor's FIFO queue. A single dispatcher
+ * thread hands the best-ranked task to the executor whenever one of its concurrency slots
+ * (pool size, or a per-node limit for virtual threads) is free. Rank is
+ * enqueuedAt - level * agingMs, so a task gains one priority level per agingMs waited:
+ * URGENT runs first, but a LOW task is never overtaken by more than 3 * agingMs of newer work.
+ *
+ * Bulkheads: every processor type waits in a queue of its own and may hold at most its
+ * max-concurrency slots, so a burst of a slow type leaves the other slots to the rest. The
+ * dispatcher picks the best-ranked task among the types with a free slot. A type whose queue
+ * is at its capacity refuses further tasks (Admission.FULL) and TaskWorker defers them, rather
+ * than letting one type's backlog pause every listener. Unknown types share GENERIC's bulkhead.
+ *
+ * When the backlog at or above some priority can fill every slot on its own, the listener
+ * containers of the lower priorities are paused so they stop fetching work that would only wait.
+ * A bulkheaded type counts for at most its own slots.
+ *
+ * Backpressure: once the total backlog reaches maxBacklog every container, retry included, is
+ * paused until it drains to half. Paused consumers keep polling (and return nothing), so slow
+ * tasks never stall a consumer thread or trip max.poll.interval.ms; the overshoot past
+ * maxBacklog is bounded by what the consumers had already fetched (max.poll.records).
+ */
+@Component
+@Slf4j
+public class TaskDispatcher {
+
+    /** Listener container ids in TaskWorker — one per priority topic, plus the retry topic. */
+    static String listenerId(Task.Priority priority) {
+        return "task-queue-" + priority.name().toLowerCase();
+    }
+
+    static final String RETRY_LISTENER_ID = "task-retry";
+
+    static final Comparator<QueuedTask> ORDER =
+            Comparator.comparingLong((QueuedTask q) -> q.rank).thenComparingLong(q -> q.sequence);
+
+    private static final Task.Priority[] PRIORITIES = Task.Priority.values();
+
+    /** Outcome of dispatch. */
+    public enum Admission {
+        /** Queued for execution — the offset may be committed. */
+        ACCEPTED,
+        /** The task type's bulkhead queue is full — the task must wait somewhere else. */
+        FULL,
+        /** Shutting down — the offset must not be committed. */
+        STOPPED
+    }
+
+    private final Executor taskExecutor;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final int concurrency;
+    private final long agingMs;
+    private final int pauseThreshold;
+    private final int maxBacklog;
+    private final int resumeBacklog;
+
+    private final Map<String, Bulkhead> bulkheads = new LinkedHashMap<>();
+    private final Bulkhead fallback;
+
+    // Guards the bulkheads' queues and counters; ready is signalled when a task or a slot frees up
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    private int queued;
+    private volatile int active;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final Set<String> paused = new HashSet<>();
+    private boolean saturated;
+
+    private volatile boolean running;
+    private Thread dispatcherThread;
+
+    /**
+     * Concurrency is the pool's max size, or the virtual-thread limit in virtual execution mode.
+     * Each processor's bulkhead comes from task.bulkhead.{type}.max-concurrency / queue-capacity,
+     * defaulting to what the processor declares.
+     */
+    @Autowired
+    public TaskDispatcher(@Qualifier("taskExecutor") Executor taskExecutor,
+                          KafkaListenerEndpointRegistry listenerRegistry,
+                          List<TaskProcessor> processors,
+                          Environment environment,
+                          @Value("${task.worker.execution-mode:platform}") String executionMode,
+                          @Value("${task.worker.max-pool-size:20}") int maxPoolSize,
+                          @Value("${task.worker.virtual.max-concurrency:1000}") int virtualConcurrency,
+                          @Value("${task.dispatcher.aging-ms:30000}") long agingMs,
+                          @Value("${task.dispatcher.pause-threshold:0}") int pauseThreshold,
+                          @Value("${task.worker.queue-capacity:100}") int maxBacklog) {
+        this(taskExecutor, listenerRegistry,
+                TaskQueueApplication.VIRTUAL_EXECUTION.equalsIgnoreCase(executionMode) ? virtualConcurrency : maxPoolSize,
+                agingMs, pauseThreshold, maxBacklog, bulkheads(processors, environment));
+    }
+
+    TaskDispatcher(Executor taskExecutor, KafkaListenerEndpointRegistry listenerRegistry,
+                   int concurrency, long agingMs, int pauseThreshold, int maxBacklog) {
+        this(taskExecutor, listenerRegistry, concurrency, agingMs, pauseThreshold, maxBacklog, Collections.emptyList());
+    }
+
+    TaskDispatcher(Executor taskExecutor, KafkaListenerEndpointRegistry listenerRegistry,
+                   int concurrency, long agingMs, int pauseThreshold, int maxBacklog, Collection<Bulkhead> bulkheads) {
+        this.taskExecutor     = taskExecutor;
+        this.listenerRegistry = listenerRegistry;
+        this.concurrency      = concurrency;
+        this.agingMs          = agingMs;
+        // 0 = pause lower priorities once higher-priority backlog alone fills every slot — or, with
+        // more slots than the backlog may hold (virtual threads), once it reaches the resume level,
+        // so the gate still acts before every listener is paused for saturation
+        this.pauseThreshold   = pauseThreshold > 0 ? pauseThreshold : Math.max(1, Math.min(concurrency, maxBacklog / 2));
+        this.maxBacklog       = maxBacklog;
+        this.resumeBacklog    = maxBacklog / 2;
+        for (Bulkhead bulkhead : bulkheads) {
+            bulkhead.limitTo(concurrency);
+            this.bulkheads.put(bulkhead.type, bulkhead);
+        }
+        Bulkhead generic = this.bulkheads.get(GenericTaskProcessor.GENERIC_TYPE);
+        if (generic == null) {
+            generic = new Bulkhead(GenericTaskProcessor.GENERIC_TYPE, 0, 0);
+            generic.limitTo(concurrency);
+            this.bulkheads.put(generic.type, generic);
+        }
+        this.fallback = generic;
+    }
+
+    private static List<Bulkhead> bulkheads(List<TaskProcessor> processors, Environment environment) {
+        List<Bulkhead> bulkheads = new ArrayList<>(processors.size());
+        for (TaskProcessor processor : processors) {
+            String prefix = "task.bulkhead." + processor.getType() + ".";
+            bulkheads.add(new Bulkhead(processor.getType(),
+                    environment.getProperty(prefix + "max-concurrency", Integer.class, processor.maxConcurrency()),
+                    environment.getProperty(prefix + "queue-capacity", Integer.class, processor.queueCapacity())));
+        }
+        return bulkheads;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        dispatcherThread = new Thread(this::dispatchLoop, "task-dispatcher");
+        dispatcherThread.setDaemon(true);
+        dispatcherThread.start();
+        log.info("Task dispatcher started: concurrency={} agingMs={} pauseThreshold={} maxBacklog={} bulkheads={}",
+                concurrency, agingMs, pauseThreshold, maxBacklog, bulkheads.values());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        dispatcherThread.interrupt();
+    }
+
+    /**
+     * Admits work for execution in priority order. Never blocks the calling listener thread.
+     * FULL when the task type's bulkhead queue is at capacity; STOPPED once the dispatcher is
+     * stopping — the caller must not commit the offset.
+     */
+    public Admission dispatch(Task task, Runnable work) {
+        if (!running) return Admission.STOPPED;
+        Task.Priority priority = task.getPriority() != null ? task.getPriority() : Task.Priority.NORMAL;
+        Bulkhead bulkhead = bulkheadFor(task.getType());
+        lock.lock();
+        try {
+            if (bulkhead.queueCapacity > 0 && bulkhead.queue.size() >= bulkhead.queueCapacity) {
+                bulkhead.overflowed.incrementAndGet();
+                if (!bulkhead.full) {
+                    bulkhead.full = true;
+                    log.info("Bulkhead {} full ({} running, {} waiting) — deferring its tasks",
+                            bulkhead.type, bulkhead.active, bulkhead.queue.size());
+                }
+                return Admission.FULL;
+            }
+            enqueue(bulkhead, new QueuedTask(priority, System.currentTimeMillis() - priority.getLevel() * agingMs,
+                    sequence.incrementAndGet(), work));
+        } finally {
+            lock.unlock();
+        }
+        adjustListeners();
+        return Admission.ACCEPTED;
+    }
+
+    /** Tasks waiting for a free slot, across all priorities. */
+    public int getBacklog() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Tasks of one priority waiting for a free slot. */
+    public int getBacklog(Task.Priority priority) {
+        lock.lock();
+        try {
+            int waiting = 0;
+            for (Bulkhead bulkhead : bulkheads.values()) {
+                waiting += bulkhead.backlog[priority.ordinal()];
+            }
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Tasks running on the executor. */
+    public int getActive() {
+        return active;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /** Hand-offs the executor rejected (each was re-queued). */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /** One bulkhead per processor type, GENERIC included. */
+    Collection<Bulkhead> getBulkheads() {
+        return Collections.unmodifiableCollection(bulkheads.values());
+    }
+
+    private Bulkhead bulkheadFor(String type) {
+        Bulkhead bulkhead = type != null ? bulkheads.get(type) : null;
+        return bulkhead != null ? bulkhead : fallback;
+    }
+
+    /** Caller holds the lock. */
+    private void enqueue(Bulkhead bulkhead, QueuedTask task) {
+        bulkhead.queue.add(task);
+        bulkhead.backlog[task.priority.ordinal()]++;
+        queued++;
+        ready.signal();
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            Bulkhead bulkhead;
+            QueuedTask next;
+            lock.lock();
+            try {
+                while ((bulkhead = nextRunnable()) == null) {
+                    ready.await();
+                }
+                next = bulkhead.queue.poll();
+                bulkhead.backlog[next.priority.ordinal()]--;
+                bulkhead.active++;
+                queued--;
+                active++;
+                if (bulkhead.full && bulkhead.queue.size() < bulkhead.queueCapacity) {
+                    bulkhead.full = false;
+                    log.info("Bulkhead {} has room again", bulkhead.type);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            adjustListeners();
+
+            Bulkhead taken = bulkhead;
+            try {
+                taskExecutor.execute(() -> {
+                    try {
+                        next.work.run();
+                    } finally {
+                        finished(taken);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The executor queues up to its slot count, so only possible while it is shutting
+                // down — keep the task and its rank
+                log.warn("Executor rejected task, re-queueing");
+                rejected.incrementAndGet();
+                finished(taken);
+                lock.lock();
+                try {
+                    enqueue(taken, next);
+                } finally {
+                    lock.unlock();
+                }
+                adjustListeners();
+            }
+        }
+    }
+
+    /** The bulkhead whose head task ranks best among those with a free slot. Caller holds the lock. */
+    private Bulkhead nextRunnable() {
+        if (active >= concurrency) return null;
+        Bulkhead best = null;
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            QueuedTask head = bulkhead.queue.peek();
+            if (head != null && bulkhead.active < bulkhead.maxConcurrency
+                    && (best == null || ORDER.compare(head, best.queue.peek()) < 0)) {
+                best = bulkhead;
+            }
+        }
+        return best;
+    }
+
+    private void finished(Bulkhead bulkhead) {
+        lock.lock();
+        try {
+            bulkhead.active--;
+            active--;
+            ready.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Pauses every listener while the dispatcher is saturated; otherwise finds the highest
+     * priority at which the backlog (that level and above) can fill every slot, pauses the
+     * listeners below it and resumes everything else.
+     */
+    synchronized void adjustListeners() {
+        int total;
+        Task.Priority gate = null;
+        lock.lock();
+        try {
+            total = queued;
+            for (Bulkhead bulkhead : bulkheads.values()) {
+                bulkhead.waitingAtOrAbove = 0;
+            }
+            for (int i = PRIORITIES.length - 1; i >= 0 && gate == null; i--) {
+                int cumulative = 0;
+                for (Bulkhead bulkhead : bulkheads.values()) {
+                    bulkhead.waitingAtOrAbove += bulkhead.backlog[i];
+                    // A type with a limit of its own can fill no more than its own slots
+                    cumulative += bulkhead.bounded
+                            ? Math.min(bulkhead.waitingAtOrAbove, bulkhead.maxConcurrency)
+                            : bulkhead.waitingAtOrAbove;
+                }
+                if (cumulative >= pauseThreshold) {
+                    gate = PRIORITIES[i];
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (!saturated && total >= maxBacklog) {
+            saturated = true;
+            log.info("Dispatcher saturated ({} waiting) — pausing all listeners", total);
+        } else if (saturated && total <= resumeBacklog) {
+            saturated = false;
+            log.info("Dispatcher drained ({} waiting) — resuming listeners", total);
+        }
+
+        for (Task.Priority priority : PRIORITIES) {
+            setPaused(listenerId(priority), saturated || (gate != null && priority.getLevel() < gate.getLevel()));
+        }
+        setPaused(RETRY_LISTENER_ID, saturated);
+    }
+
+    private void setPaused(String listenerId, boolean shouldPause) {
+        if (shouldPause == paused.contains(listenerId)) return;
+
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(listenerId);
+        if (container == null) return;
+        if (shouldPause) {
+            container.pause();
+            paused.add(listenerId);
+            log.debug("Paused {} listener", listenerId);
+        } else {
+            container.resume();
+            paused.remove(listenerId);
+            log.debug("Resumed {} listener", listenerId);
+        }
+    }
+
+    /**
+     * Queue and slot limit of one processor type. maxConcurrency 0 = no limit of its own (every
+     * slot), queueCapacity 0 = bounded only by the dispatcher's maxBacklog. Counters other than
+     * overflowed are guarded by the dispatcher's lock.
+     */
+    static final class Bulkhead {
+        final String type;
+        int maxConcurrency;
+        boolean bounded;
+        final int queueCapacity;
+
+        final PriorityQueue<QueuedTask> queue = new PriorityQueue<>(ORDER);
+        final int[] backlog = new int[PRIORITIES.length];
+        final AtomicLong overflowed = new AtomicLong();
+        volatile int active;
+        boolean full;
+        int waitingAtOrAbove;
+
+        Bulkhead(String type, int maxConcurrency, int queueCapacity) {
+            this.type           = type;
+            this.maxConcurrency = maxConcurrency;
+            this.queueCapacity  = queueCapacity;
+        }
+
+        void limitTo(int concurrency) {
+            bounded = maxConcurrency > 0 && maxConcurrency < concurrency;
+            maxConcurrency = bounded ? maxConcurrency : concurrency;
+        }
+
+        int getActive() {
+            return active;
+        }
+
+        /** Waiting tasks — a plain read, so at most momentarily stale. */
+        int getQueued() {
+            return queue.size();
+        }
+
+        @Override
+        public String toString() {
+            return type + "(" + (bounded ? maxConcurrency : "-") + "/" + (queueCapacity > 0 ? queueCapacity : "-") + ")";
+        }
+    }
+
+    static final class QueuedTask {
+        final Task.Priority priority;
+        final long rank;
+        final long sequence;
+        final Runnable work;
+
+        QueuedTask(Task.Priority priority, long rank, long sequence, Runnable work) {
+            this.priority = priority;
+            this.rank     = rank;
+            this.sequence = sequence;
+            this.work     = work;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.taskqueue.worker;
+
+import com.taskqueue.Task;
+import com.taskqueue.model.TaskField;
+import com.taskqueue.service.TaskService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lease-based in-flight tracking. A task holds a lease in the tasks:leases sorted set
+ * (scored by expiry) from the moment its offset is acked until its run ends, and the node
+ * holding it renews every lease it owns on a short interval. If the node dies, renewals stop;
+ * once a lease expires any node's reaper re-enqueues the task through the durable RetryQueue.
+ *
+ * A task that was PROCESSING when its worker vanished counts as a failed attempt (retryCount
+ * is bumped, the error names the lost workerId) so a task that crashes workers cannot loop
+ * forever. A task that was still waiting in the dead node's dispatcher is re-enqueued as is.
+ *
+ * Renewal and reaping run on a scheduler of their own rather than the shared @Scheduled pool,
+ * where the retry and outbox publishers can block for seconds on broker acks: a renewal held
+ * up past the lease duration would have live work reaped and run twice.
+ */
+@Component
+@Slf4j
+public class TaskLeaseManager {
+
+    private static final String LEASES = "tasks:leases";
+
+    private static final RedisScript<Long> RENEW_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/renew-leases.lua"), Long.class);
+    private static final RedisScript<List> CLAIM_EXPIRED_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/claim-expired-leases.lua"), List.class);
+
+    private static final int REAP_BATCH = 500;
+
+    // Recovery only needs these — the payload stays in Redis for RetryQueue to publish
+    private static final Set<TaskField> RECOVERY_FIELDS = EnumSet.of(TaskField.STATUS, TaskField.WORKER_ID,
+            TaskField.RETRY_COUNT, TaskField.MAX_RETRIES, TaskField.CREATED_AT);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final TaskService taskService;
+    private final RetryQueue retryQueue;
+    private final long leaseMs;
+    private final long renewIntervalMs;
+    private final long reapIntervalMs;
+
+    // Leases held by this node — renewed together
+    private final Set<String> held = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolTaskScheduler scheduler;
+
+    public TaskLeaseManager(RedisTemplate<String, String> redisTemplate,
+                            TaskService taskService,
+                            RetryQueue retryQueue,
+                            @Value("${task.lease.duration-ms:10000}") long leaseMs,
+                            @Value("${task.lease.renew-interval-ms:3000}") long renewIntervalMs,
+                            @Value("${task.lease.reap-interval-ms:2000}") long reapIntervalMs) {
+        this.redisTemplate   = redisTemplate;
+        this.taskService     = taskService;
+        this.retryQueue      = retryQueue;
+        this.leaseMs         = leaseMs;
+        this.renewIntervalMs = renewIntervalMs;
+        this.reapIntervalMs  = reapIntervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = new ThreadPoolTaskScheduler();
+        // One thread each, so a long reap never delays a renewal either
+        scheduler.setPoolSize(2);
+        scheduler.setThreadNamePrefix("task-lease-");
+        scheduler.initialize();
+        scheduler.scheduleWithFixedDelay(this::renewAll, Duration.ofMillis(renewIntervalMs));
+        scheduler.scheduleWithFixedDelay(this::reapExpired, Duration.ofMillis(reapIntervalMs));
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdown();
+    }
+
+    public void acquire(String taskId) {
+        held.add(taskId);
+        redisTemplate.opsForZSet().add(LEASES, taskId, System.currentTimeMillis() + leaseMs);
+    }
+
+    public void release(String taskId) {
+        held.remove(taskId);
+        redisTemplate.opsForZSet().remove(LEASES, taskId);
+    }
+
+    /** Extends every lease this node holds in one script call. */
+    public void renewAll() {
+        if (held.isEmpty()) return;
+        try {
+            List<String> args = new ArrayList<>(held.size() + 1);
+            args.add(String.valueOf(System.currentTimeMillis() + leaseMs));
+            args.addAll(held);
+            Long renewed = redisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(LEASES), args.toArray());
+            if (renewed != null && renewed < args.size() - 1) {
+                log.warn("{} held leases were already reaped — those tasks may run twice", args.size() - 1 - renewed);
+            }
+        } catch (Exception e) {
+            log.error("Failed to renew task leases", e);
+        }
+    }
+
+    /** Recovers tasks whose lease expired, i.e. whose worker stopped renewing. */
+    public void reapExpired() {
+        try {
+            List<String> ids;
+            do {
+                @SuppressWarnings("unchecked")
+                List<String> claimed = redisTemplate.execute(CLAIM_EXPIRED_SCRIPT, Collections.singletonList(LEASES),
+                        String.valueOf(System.currentTimeMillis()), String.valueOf(REAP_BATCH));
+                ids = claimed != null ? claimed : Collections.emptyList();
+                taskService.getTasks(ids, RECOVERY_FIELDS).forEach(this::recover);
+            } while (ids.size() == REAP_BATCH);
+        } catch (Exception e) {
+            log.error("Failed to reap expired task leases", e);
+        }
+    }
+
+    private void recover(Task task) {
+        Task.TaskStatus s = task.getStatus();
+        if (s == Task.TaskStatus.PROCESSING) {
+            String lostWorker = task.getWorkerId();
+            task.setRetryCount(task.getRetryCount() + 1);
+            task.setError("Lease expired on " + lostWorker);
+            if (task.getRetryCount() > task.getMaxRetries()) {
+                task.setStatus(Task.TaskStatus.FAILED);
+                taskService.updateTask(task, TaskField.STATUS, TaskField.RETRY_COUNT, TaskField.ERROR);
+                log.error("Task {} failed permanently — lease lost on {} after {} attempts",
+                        task.getId(), lostWorker, task.getRetryCount());
+                return;
+            }
+            task.setStatus(Task.TaskStatus.RETRYING);
+            taskService.updateTask(task, TaskField.STATUS, TaskField.RETRY_COUNT, TaskField.ERROR);
+            retryQueue.schedule(task.getId(), 0);
+            log.warn("Recovered task {} from {} — lease expired mid-execution (attempt {})",
+                    task.getId(), lostWorker, task.getRetryCount());
+        } else if (s == Task.TaskStatus.PENDING || s == Task.TaskStatus.RETRYING) {
+            // Admitted by a node that died before starting it
+            retryQueue.schedule(task.getId(), 0);
+            log.warn("Re-enqueued task {} — lease expired before execution started", task.getId());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.taskqueue.worker;
+
+import com.taskqueue.Task;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker-side meters, exposed on /actuator/prometheus.
+ *
+ * Every meter is registered up front — one set per TaskProcessor, with a timer per priority —
+ * so recording a task is a map lookup and an array index, never a tag list or a registry
+ * lookup. Tags use the processor type rather than the raw task type: unknown types run on
+ * GENERIC and are counted there, which keeps the series count bounded by the processors.
+ *
+ * Dispatcher and bulkhead gauges and counters read the dispatcher's state when scraped.
+ *
+ * Redis and Kafka latency and consumer lag are not recorded here; the Lettuce, KafkaTemplate
+ * and Kafka client meters that Spring Boot binds already cover them.
+ */
+@Component
+public class TaskMetrics {
+
+    static final String QUEUE_WAIT = "task.queue.wait";
+    static final String EXECUTION  = "task.execution";
+    static final String OUTCOMES   = "task.processor.outcomes";
+    static final String THROTTLED  = "task.ratelimit.deferred";
+
+    private static final Task.Priority[] PRIORITIES = Task.Priority.values();
+
+    private final Map<String, ProcessorMeters> byType = new HashMap<>();
+
+    @Autowired
+    public TaskMetrics(MeterRegistry registry, List<TaskProcessor> processors, TaskDispatcher dispatcher) {
+        this(registry, processors);
+        for (Task.Priority priority : PRIORITIES) {
+            Gauge.builder("task.dispatcher.backlog", dispatcher, d -> d.getBacklog(priority))
+                    .description("Tasks waiting for an execution slot")
+                    .tag("priority", priority.name())
+                    .register(registry);
+        }
+        Gauge.builder("task.dispatcher.active", dispatcher, TaskDispatcher::getActive)
+                .description("Tasks running on the taskExecutor")
+                .register(registry);
+        Gauge.builder("task.dispatcher.concurrency", dispatcher, TaskDispatcher::getConcurrency)
+                .description("Execution slots on this node")
+                .register(registry);
+        FunctionCounter.builder("task.dispatcher.rejected", dispatcher, TaskDispatcher::getRejected)
+                .description("Hand-offs rejected by the taskExecutor and re-queued")
+                .register(registry);
+        for (TaskDispatcher.Bulkhead bulkhead : dispatcher.getBulkheads()) {
+            Gauge.builder("task.bulkhead.active", bulkhead, TaskDispatcher.Bulkhead::getActive)
+                    .description("Execution slots held by the type")
+                    .tag("type", bulkhead.type)
+                    .register(registry);
+            Gauge.builder("task.bulkhead.queued", bulkhead, TaskDispatcher.Bulkhead::getQueued)
+                    .description("Tasks of the type waiting for a slot")
+                    .tag("type", bulkhead.type)
+                    .register(registry);
+            Gauge.builder("task.bulkhead.limit", bulkhead, b -> b.maxConcurrency)
+                    .description("Most execution slots the type may hold")
+                    .tag("type", bulkhead.type)
+                    .register(registry);
+            FunctionCounter.builder("task.bulkhead.overflow", bulkhead, b -> b.overflowed.get())
+                    .description("Tasks deferred because the type's queue was full")
+                    .tag("type", bulkhead.type)
+                    .register(registry);
+        }
+    }
+
+    TaskMetrics(MeterRegistry registry, List<TaskProcessor> processors) {
+        for (TaskProcessor processor : processors) {
+            byType.put(processor.getType(), new ProcessorMeters(registry, processor.getType()));
+        }
+    }
+
+    /** The meters of a registered processor. */
+    ProcessorMeters of(TaskProcessor processor) {
+        return byType.get(processor.getType());
+    }
+
+    static final class ProcessorMeters {
+        private final Timer[] queueWait = new Timer[PRIORITIES.length];
+        private final Timer[] execution = new Timer[PRIORITIES.length];
+        private final Counter completed;
+        private final Counter retried;
+        private final Counter failed;
+        private final Counter throttled;
+
+        ProcessorMeters(MeterRegistry registry, String type) {
+            for (Task.Priority priority : PRIORITIES) {
+                queueWait[priority.ordinal()] = Timer.builder(QUEUE_WAIT)
+                        .description("Time from submission to the first execution attempt")
+                        .tags("type", type, "priority", priority.name())
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofMillis(1))
+                        .maximumExpectedValue(Duration.ofHours(1))
+                        .register(registry);
+                execution[priority.ordinal()] = Timer.builder(EXECUTION)
+                        .description("Processor run time per attempt")
+                        .tags("type", type, "priority", priority.name())
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofMillis(1))
+                        .maximumExpectedValue(Duration.ofMinutes(10))
+                        .register(registry);
+            }
+            completed = outcome(registry, type, "completed");
+            retried   = outcome(registry, type, "retried");
+            failed    = outcome(registry, type, "failed");
+            throttled = Counter.builder(THROTTLED)
+                    .description("Tasks deferred for lack of a rate-limit token")
+                    .tag("processor", type)
+                    .register(registry);
+        }
+
+        private static Counter outcome(MeterRegistry registry, String type, String outcome) {
+            return Counter.builder(OUTCOMES)
+                    .description("Finished attempts by outcome; failed = retries exhausted")
+                    .tags("processor", type, "outcome", outcome)
+                    .register(registry);
+        }
+
+        void recordQueueWait(Task.Priority priority, long millis) {
+            queueWait[priority.ordinal()].record(Math.max(0, millis), TimeUnit.MILLISECONDS);
+        }
+
+        void recordThrottled() {
+            throttled.increment();
+        }
+
+        /** Records one attempt's run time and how it ended. */
+        void recordAttempt(Task.Priority priority, long millis, Task.TaskStatus status) {
+            execution[priority.ordinal()].record(millis, TimeUnit.MILLISECONDS);
+            switch (status) {
+                case COMPLETED: completed.increment(); break;
+                case RETRYING:  retried.increment();   break;
+                default:        failed.increment();
+            }
+        }
+    }
+}
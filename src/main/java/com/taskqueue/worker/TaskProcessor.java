@@ -11,4 +11,33 @@ import java.util.Map;
 public interface TaskProcessor {
     String getType();
     String process(Map<String, Object> payload) throws Exception;
+
+    /**
+     * Bulkhead: most executor slots this type may hold at once, 0 = no limit of its own.
+     * Overridden by task.bulkhead.{type}.max-concurrency.
+     */
+    default int maxConcurrency() {
+        return 0;
+    }
+
+    /**
+     * Bulkhead: most tasks of this type waiting in the dispatcher before further ones are
+     * deferred, 0 = no limit of its own. Overridden by task.bulkhead.{type}.queue-capacity.
+     */
+    default int queueCapacity() {
+        return 0;
+    }
+
+    /**
+     * Rate limit: cluster-wide tasks per second this type may start, 0 = unlimited.
+     * Overridden by task.rate-limit.{type}.per-second, and at runtime by PUT /tasks/rate-limits/{type}.
+     */
+    default double ratePerSecond() {
+        return 0;
+    }
+
+    /** Rate limit: tokens the bucket holds when idle, 0 = one second's worth. */
+    default int rateBurst() {
+        return 0;
+    }
 }
@@ -0,0 +1,160 @@
+package com.taskqueue.worker;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cluster-wide token bucket per task type, for processors that front a rate-limited
+ * downstream (an SMTP relay, a third-party API). TaskWorker takes a token right before running
+ * a task; without one the task is deferred through the RetryQueue instead of hitting a 429.
+ *
+ * The bucket lives in Redis (tasks:ratelimit:{type}) and acquire-token.lua refills and takes
+ * from it in one atomic step, so every node shares the same budget. Configured limits come from
+ * task.rate-limit.{type}.per-second / burst, defaulting to what the processor declares; a limit
+ * set at runtime (PUT /tasks/rate-limits/{type}) is stored in tasks:ratelimit:limits and read by
+ * the script on every call, so it applies cluster-wide at once — within refresh-interval-ms for
+ * a type whose configured limit is none, since those skip the script.
+ *
+ * If Redis cannot be reached the task runs anyway — the downstream still has the last word,
+ * and a failed check must not stall the queue.
+ */
+@Component
+@Slf4j
+public class TaskRateLimiter {
+
+    private static final String BUCKET_PREFIX = "tasks:ratelimit:";
+    private static final String LIMITS = "tasks:ratelimit:limits";
+
+    private static final RedisScript<Long> ACQUIRE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/acquire-token.lua"), Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    // Configured limit per processor type; types without a rate never reach Redis
+    private final Map<String, Limit> configured = new LinkedHashMap<>();
+    // Types with a runtime limit, refreshed periodically — lets a type configured as unlimited
+    // be limited at runtime without every other type paying a Redis call per task
+    private volatile Set<String> overridden = Collections.emptySet();
+
+    @Autowired
+    public TaskRateLimiter(RedisTemplate<String, String> redisTemplate,
+                           List<TaskProcessor> processors,
+                           Environment environment) {
+        this.redisTemplate = redisTemplate;
+        for (TaskProcessor processor : processors) {
+            String prefix = "task.rate-limit." + processor.getType() + ".";
+            configured.put(processor.getType(), new Limit(
+                    environment.getProperty(prefix + "per-second", Double.class, processor.ratePerSecond()),
+                    environment.getProperty(prefix + "burst", Integer.class, processor.rateBurst())));
+        }
+        refreshOverrides();
+        log.info("Task rate limits: {}", configured);
+    }
+
+    /**
+     * Takes a token for the processor type. Returns 0 if the task may run now, otherwise the
+     * millis until the type's bucket has a token again.
+     */
+    public long acquire(String type) {
+        Limit limit = configured.getOrDefault(type, Limit.UNLIMITED);
+        if (limit.perSecond <= 0 && !overridden.contains(type)) return 0;
+        try {
+            Long wait = redisTemplate.execute(ACQUIRE_SCRIPT, Arrays.asList(BUCKET_PREFIX + type, LIMITS),
+                    type, String.valueOf(limit.perSecond), String.valueOf(limit.burst),
+                    String.valueOf(System.currentTimeMillis()));
+            return wait != null ? wait : 0;
+        } catch (Exception e) {
+            log.warn("Rate limit check failed for {}, running the task unthrottled", type, e);
+            return 0;
+        }
+    }
+
+    /** Sets a cluster-wide limit for the type, in force until cleared. perSecond 0 = unlimited. */
+    public void setLimit(String type, double perSecond, int burst) {
+        Limit limit = new Limit(perSecond, burst);
+        Map<String, String> fields = new HashMap<>();
+        fields.put(type + ":rate", String.valueOf(limit.perSecond));
+        fields.put(type + ":burst", String.valueOf(limit.burst));
+        redisTemplate.opsForHash().putAll(LIMITS, fields);
+        refreshOverrides();
+        log.info("Rate limit for {} set to {}", type, limit);
+    }
+
+    /** Drops the runtime limit — the type is back on its configured one. */
+    public void clearLimit(String type) {
+        redisTemplate.opsForHash().delete(LIMITS, type + ":rate", type + ":burst");
+        refreshOverrides();
+        log.info("Rate limit for {} reset to {}", type, configured.getOrDefault(type, Limit.UNLIMITED));
+    }
+
+    /** Effective limit per processor type: perSecond, burst and whether it was set at runtime. */
+    public Map<String, Map<String, Object>> getLimits() {
+        Map<Object, Object> runtime = redisTemplate.opsForHash().entries(LIMITS);
+        Map<String, Map<String, Object>> limits = new LinkedHashMap<>();
+        for (Map.Entry<String, Limit> entry : configured.entrySet()) {
+            String type = entry.getKey();
+            Object rate  = runtime.get(type + ":rate");
+            Object burst = runtime.get(type + ":burst");
+            Map<String, Object> limit = new LinkedHashMap<>();
+            limit.put("perSecond", rate != null ? Double.parseDouble((String) rate) : entry.getValue().perSecond);
+            limit.put("burst", burst != null ? Integer.parseInt((String) burst) : entry.getValue().burst);
+            limit.put("runtime", rate != null);
+            limits.put(type, limit);
+        }
+        return limits;
+    }
+
+    public boolean isKnownType(String type) {
+        return configured.containsKey(type);
+    }
+
+    /**
+     * Re-reads which types have a runtime limit. Only matters for types configured as unlimited;
+     * for the others the script reads the runtime limit on every call.
+     */
+    @Scheduled(fixedDelayString = "${task.rate-limit.refresh-interval-ms:5000}")
+    public void refreshOverrides() {
+        try {
+            Set<String> types = new HashSet<>();
+            for (Object field : redisTemplate.opsForHash().keys(LIMITS)) {
+                String name = (String) field;
+                types.add(name.substring(0, name.lastIndexOf(':')));
+            }
+            overridden = types;
+        } catch (Exception e) {
+            log.warn("Failed to read runtime rate limits", e);
+        }
+    }
+
+    static final class Limit {
+        static final Limit UNLIMITED = new Limit(0, 0);
+
+        final double perSecond;
+        final int burst;
+
+        Limit(double perSecond, int burst) {
+            this.perSecond = perSecond;
+            // 0 = one second's worth of tokens
+            this.burst     = burst > 0 ? burst : (int) Math.max(1, Math.ceil(perSecond));
+        }
+
+        @Override
+        public String toString() {
+            return perSecond > 0 ? perSecond + "/s burst " + burst : "unlimited";
+        }
+    }
+}
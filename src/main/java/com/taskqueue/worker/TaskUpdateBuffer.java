@@ -0,0 +1,248 @@
+package com.taskqueue.worker;
+
+import com.taskqueue.Task;
+import com.taskqueue.model.TaskField;
+import com.taskqueue.service.TaskService;
+import com.taskqueue.service.TaskUpdatePublisher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-node write-behind buffer for the worker's task state writes and WebSocket deltas.
+ *
+ * Updates are coalesced by task id — the latest snapshot wins and the changed fields are
+ * unioned — and a single flusher thread writes them with TaskService.updateTasks, one Redis
+ * pipeline per flush, refreshing this node's worker registration in the same round trip.
+ * A flush starts flushIntervalMs after the first update arrives, or as soon as batchSize
+ * tasks are waiting. Each task's changed fields go to the TaskUpdatePublisher once per flush,
+ * after its write, so a fast task's PROCESSING and final state become one delta.
+ *
+ * The buffer holds at most maxPending task ids; a worker thread staging a new id beyond that
+ * waits for the next flush. stage() returns a future completed once the state has been
+ * written, which the worker waits on before releasing the lease or scheduling a retry. Once
+ * stopped, the remaining updates are flushed and later ones are written synchronously.
+ */
+@Component
+@Slf4j
+public class TaskUpdateBuffer {
+
+    private final TaskService taskService;
+    private final TaskUpdatePublisher publisher;
+    private final long flushIntervalMs;
+    private final int batchSize;
+    private final int maxPending;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushNeeded = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private Map<String, Pending> pending = new LinkedHashMap<>();
+    private String workerId;
+    private String workerStatus;
+
+    private volatile boolean running;
+    private Thread flusherThread;
+
+    @Autowired
+    public TaskUpdateBuffer(TaskService taskService,
+                            TaskUpdatePublisher publisher,
+                            @Value("${task.worker.write-behind.flush-interval-ms:5}") long flushIntervalMs,
+                            @Value("${task.worker.write-behind.batch-size:200}") int batchSize,
+                            @Value("${task.worker.write-behind.max-pending:2000}") int maxPending) {
+        this.taskService       = taskService;
+        this.publisher         = publisher;
+        this.flushIntervalMs   = flushIntervalMs;
+        this.batchSize         = batchSize;
+        this.maxPending        = Math.max(maxPending, batchSize);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        flusherThread = new Thread(this::flushLoop, "task-update-flusher");
+        flusherThread.setDaemon(true);
+        flusherThread.start();
+        log.info("Task update buffer started: flushIntervalMs={} batchSize={} maxPending={}",
+                flushIntervalMs, batchSize, maxPending);
+    }
+
+    /** Stops the flusher and writes everything still buffered. */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        lock.lock();
+        try {
+            running = false;
+            flushNeeded.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        flusherThread.join(TimeUnit.SECONDS.toMillis(10));
+        flush(drain());
+    }
+
+    /**
+     * Buffers the changed fields of the task (no fields = full write) and its WebSocket delta.
+     * The task is copied, so the caller may keep mutating it. The returned future completes
+     * when this state — or a later one of the same task — has been written to Redis, and
+     * completes exceptionally if that write failed.
+     */
+    public CompletableFuture<Void> stage(Task task, TaskField... changed) {
+        Task snapshot = task.copy();
+        Set<TaskField> fields = changed.length == 0 ? EnumSet.allOf(TaskField.class) : EnumSet.copyOf(Arrays.asList(changed));
+
+        Pending entry;
+        lock.lock();
+        try {
+            entry = pending.get(task.getId());
+            if (entry == null) {
+                while (running && pending.size() >= maxPending) {
+                    flushNeeded.signal();
+                    notFull.awaitUninterruptibly();
+                }
+                if (running) {
+                    entry = new Pending();
+                    pending.put(task.getId(), entry);
+                    if (pending.size() == 1 || pending.size() >= batchSize) {
+                        flushNeeded.signal();
+                    }
+                }
+            }
+            if (entry != null) {
+                entry.task = snapshot;
+                entry.fields.addAll(fields);
+                return entry.written;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // Stopped — nothing left to coalesce with, write through
+        entry = new Pending();
+        entry.task = snapshot;
+        entry.fields.addAll(fields);
+        flush(Collections.singletonMap(task.getId(), entry));
+        return entry.written;
+    }
+
+    /** This node's worker status, written with the next flush (latest value wins). */
+    public void setWorkerStatus(String workerId, String status) {
+        lock.lock();
+        try {
+            this.workerId     = workerId;
+            this.workerStatus = status;
+            flushNeeded.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Task ids waiting for the next flush. */
+    public int getPending() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            Map<String, Pending> batch;
+            lock.lock();
+            try {
+                while (running && pending.isEmpty() && workerId == null) {
+                    flushNeeded.awaitUninterruptibly();
+                }
+                // Batch window: give other updates flushIntervalMs to join, unless the batch is full
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                long remaining;
+                while (running && pending.size() < batchSize && (remaining = deadline - System.nanoTime()) > 0) {
+                    try {
+                        flushNeeded.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (!running) return; // stop() drains what is left
+                batch = drainLocked();
+            } finally {
+                lock.unlock();
+            }
+            flush(batch);
+        }
+    }
+
+    private Map<String, Pending> drain() {
+        lock.lock();
+        try {
+            return drainLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Map<String, Pending> drainLocked() {
+        Map<String, Pending> batch = pending;
+        pending = new LinkedHashMap<>();
+        notFull.signalAll();
+        return batch;
+    }
+
+    /** One pipeline for the whole batch, then one delta per task. Never throws. */
+    void flush(Map<String, Pending> batch) {
+        String id;
+        String status;
+        lock.lock();
+        try {
+            id     = workerId;
+            status = workerStatus;
+            workerId = null;
+        } finally {
+            lock.unlock();
+        }
+        if (batch.isEmpty() && id == null) return;
+
+        List<Task> tasks = new ArrayList<>(batch.size());
+        List<Set<TaskField>> fields = new ArrayList<>(batch.size());
+        batch.values().forEach(entry -> {
+            tasks.add(entry.task);
+            fields.add(entry.fields);
+        });
+        try {
+            taskService.updateTasks(tasks, fields, id, status);
+        } catch (Exception e) {
+            log.error("Failed to flush {} task updates", tasks.size(), e);
+            batch.values().forEach(entry -> entry.written.completeExceptionally(e));
+            return;
+        }
+        for (Pending entry : batch.values()) {
+            publisher.publish(entry.task, entry.fields);
+            entry.written.complete(null);
+        }
+    }
+
+    static final class Pending {
+        Task task;
+        final Set<TaskField> fields = EnumSet.noneOf(TaskField.class);
+        final CompletableFuture<Void> written = new CompletableFuture<>();
+    }
+}
@@ -1,26 +1,30 @@
 package com.taskqueue.worker;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.taskqueue.Task;
+import com.taskqueue.codec.TaskCodec;
+import com.taskqueue.model.TaskField;
 import com.taskqueue.service.TaskService;
 import com.taskqueue.worker.processors.GenericTaskProcessor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.Acknowledgment;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Component
@@ -28,29 +32,59 @@ import java.util.stream.Collectors;
 public class TaskWorker {
 
     private final TaskService taskService;
-    private final ObjectMapper objectMapper;
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final TaskCodec taskCodec;
+    private final TaskUpdateBuffer updates;
+    private final TaskDispatcher dispatcher;
+    private final RetryQueue retryQueue;
+    private final TaskLeaseManager leases;
+    private final TaskMetrics metrics;
+    private final TaskRateLimiter rateLimiter;
 
     // Strategy pattern: keyed by task type, built from all @Component TaskProcessor beans
     private final Map<String, TaskProcessor> processors;
 
-    // Single-thread scheduler used to enforce exponential backoff delay before re-enqueueing retries
-    private final ScheduledExecutorService retryScheduler = new ScheduledThreadPoolExecutor(1);
+    private static final long NACK_SLEEP_MS = 1000;
 
-    private static final String RETRY_TOPIC = "task-retry";
+    @Value("${task.bulkhead.overflow-delay-ms:2000}")
+    private long overflowDelayMs = 2000;
+
+    @Value("${task.rate-limit.defer-jitter-ms:1000}")
+    private long rateLimitJitterMs = 1000;
+
+    private final AtomicInteger running = new AtomicInteger();
 
     private String workerId;
 
+    /** Unmetered and without rate limits — for tests and benchmarks. */
     public TaskWorker(TaskService taskService,
-                      ObjectMapper objectMapper,
-                      KafkaTemplate<String, String> kafkaTemplate,
-                      SimpMessagingTemplate messagingTemplate,
+                      TaskCodec taskCodec,
+                      TaskUpdateBuffer updates,
+                      TaskDispatcher dispatcher,
+                      RetryQueue retryQueue,
+                      TaskLeaseManager leases,
                       List<TaskProcessor> processorList) {
+        this(taskService, taskCodec, updates, dispatcher, retryQueue, leases, processorList,
+                new TaskMetrics(new SimpleMeterRegistry(), processorList), null);
+    }
+
+    @Autowired
+    public TaskWorker(TaskService taskService,
+                      TaskCodec taskCodec,
+                      TaskUpdateBuffer updates,
+                      TaskDispatcher dispatcher,
+                      RetryQueue retryQueue,
+                      TaskLeaseManager leases,
+                      List<TaskProcessor> processorList,
+                      TaskMetrics metrics,
+                      TaskRateLimiter rateLimiter) {
         this.taskService      = taskService;
-        this.objectMapper     = objectMapper;
-        this.kafkaTemplate    = kafkaTemplate;
-        this.messagingTemplate = messagingTemplate;
+        this.taskCodec        = taskCodec;
+        this.updates          = updates;
+        this.dispatcher       = dispatcher;
+        this.retryQueue       = retryQueue;
+        this.leases           = leases;
+        this.metrics          = metrics;
+        this.rateLimiter      = rateLimiter;
         // Build the strategy registry from all @Component TaskProcessor beans
         this.processors = processorList.stream()
                 .collect(Collectors.toMap(TaskProcessor::getType, p -> p));
@@ -65,127 +99,192 @@ public class TaskWorker {
 
     /**
      * Kafka consumer threads call this method then immediately return to poll the next message.
-     * Actual task execution is offloaded to the "taskExecutor" thread pool via @Async.
-     * Manual ack is committed after the task is accepted for async execution.
+     * Actual task execution is handed to the TaskDispatcher, which feeds the "taskExecutor"
+     * pool in priority order. One listener container per priority topic, so the dispatcher
+     * can pause lower priorities while higher-priority backlog fills every slot.
+     * Manual ack is committed once the dispatcher has admitted the task; the dispatcher pauses
+     * these containers when its backlog is full, so admission itself never blocks.
      */
-    @KafkaListener(topics = {"task-queue-low", "task-queue-normal", "task-queue-high", "task-queue-urgent"})
-    public void processTask(String taskJson, Acknowledgment ack) {
-        handleIncoming(taskJson, ack, false);
+    @KafkaListener(id = "task-queue-urgent", idIsGroup = false, topics = "task-queue-urgent")
+    @KafkaListener(id = "task-queue-high",   idIsGroup = false, topics = "task-queue-high")
+    @KafkaListener(id = "task-queue-normal", idIsGroup = false, topics = "task-queue-normal")
+    @KafkaListener(id = "task-queue-low",    idIsGroup = false, topics = "task-queue-low")
+    public void processTask(byte[] message, Acknowledgment ack) {
+        handleIncoming(message, ack);
     }
 
-    @KafkaListener(topics = RETRY_TOPIC)
-    public void processRetryTask(String taskJson, Acknowledgment ack) {
-        handleIncoming(taskJson, ack, true);
+    @KafkaListener(id = TaskDispatcher.RETRY_LISTENER_ID, idIsGroup = false, topics = RetryQueue.RETRY_TOPIC)
+    public void processRetryTask(byte[] message, Acknowledgment ack) {
+        handleIncoming(message, ack);
     }
 
-    private void handleIncoming(String taskJson, Acknowledgment ack, boolean isRetry) {
+    private void handleIncoming(byte[] message, Acknowledgment ack) {
         try {
-            Task task = objectMapper.readValue(taskJson, Task.class);
+            Task task = taskCodec.decode(message);
 
-            // Idempotency check: re-fetch latest state from Redis before executing.
-            // Prevents duplicate execution if Kafka redelivers a message (e.g. after rebalance).
+            // Messages are claim tickets without payload — the task is always run from its
+            // latest Redis state, which also prevents duplicate execution if Kafka redelivers
+            // a message (e.g. after rebalance) and picks up any manual pause/cancel.
             Task latest = taskService.getTask(task.getId());
-            if (latest != null) {
-                Task.TaskStatus s = latest.getStatus();
-                if (s == Task.TaskStatus.COMPLETED || s == Task.TaskStatus.CANCELLED) {
-                    log.info("Skipping already-{} task: {}", s, task.getId());
-                    ack.acknowledge();
-                    return;
-                }
-                // Use the latest Redis state to pick up any manual pause/cancel
-                task = latest;
+            if (latest == null) {
+                log.info("Skipping task that no longer exists: {}", task.getId());
+                ack.acknowledge();
+                return;
             }
-
-            if (isRetry) {
-                log.info("Retrying task: {} (attempt {})", task.getId(), task.getRetryCount() + 1);
+            Task.TaskStatus s = latest.getStatus();
+            if (s == Task.TaskStatus.COMPLETED || s == Task.TaskStatus.CANCELLED) {
+                log.info("Skipping already-{} task: {}", s, task.getId());
+                ack.acknowledge();
+                return;
             }
+            task = latest;
 
-            // Acknowledge offset now — execution is handed off to async thread pool.
-            // If the app crashes after ack but before completion, the task stays PROCESSING
-            // in Redis and can be recovered by a stuck-task scanner (future improvement).
-            ack.acknowledge();
-            executeTaskAsync(task);
+            // Acknowledge the offset only once the dispatcher has admitted the task.
+            // The lease taken first covers the gap: if this node dies after the ack but before
+            // completion, the lease stops being renewed and another node's reaper re-enqueues it.
+            final Task accepted = task;
+            leases.acquire(accepted.getId());
+            switch (dispatcher.dispatch(accepted, () -> executeTask(accepted))) {
+                case ACCEPTED:
+                    ack.acknowledge();
+                    break;
+                case FULL:
+                    // The type's bulkhead is full — park the task in the retry queue instead of
+                    // holding the partition; this is not a failed attempt, so retryCount stays
+                    leases.release(accepted.getId());
+                    retryQueue.schedule(accepted.getId(), overflowDelayMs);
+                    ack.acknowledge();
+                    log.debug("Bulkhead for {} full, deferring task {} by {}ms",
+                            accepted.getType(), accepted.getId(), overflowDelayMs);
+                    break;
+                default:
+                    // Shutting down — leave the offset uncommitted so the record is redelivered
+                    leases.release(accepted.getId());
+                    ack.nack(Duration.ofMillis(NACK_SLEEP_MS));
+            }
 
-        } catch (JsonProcessingException e) {
+        } catch (IOException e) {
             log.error("Failed to deserialize task message", e);
             ack.acknowledge(); // Don't block the partition on a malformed message
         }
     }
 
     /**
-     * Runs in the "taskExecutor" thread pool (configured in TaskQueueApplication).
-     * Kafka consumer threads are never blocked by task execution.
+     * Runs in the "taskExecutor" thread pool (configured in TaskQueueApplication), started
+     * by the TaskDispatcher. Kafka consumer threads are never blocked by task execution.
+     * State writes and WebSocket pushes go through the TaskUpdateBuffer; the final state is
+     * waited for before the lease is released or a retry is scheduled.
+     * Queue wait is recorded for first attempts only — a retry's wait includes its backoff.
+     * A type out of rate-limit tokens is deferred through the RetryQueue before anything is
+     * written: the task keeps its status and retryCount, and its slot is freed at once.
+     * The retry line is logged here rather than on receipt from task-retry, which also carries
+     * deferred tasks back — so it appears once per attempt, not once per deferral.
      */
-    @Async("taskExecutor")
-    public void executeTaskAsync(Task task) {
+    void executeTask(Task task) {
         long startTime = System.currentTimeMillis();
+        running.incrementAndGet();
+        updates.setWorkerStatus(workerId, "BUSY");
+
+        TaskProcessor processor = processorFor(task.getType());
+        TaskMetrics.ProcessorMeters meters = metrics.of(processor);
+        Task.Priority priority = task.getPriority() != null ? task.getPriority() : Task.Priority.NORMAL;
 
         try {
-            task.setStatus(Task.TaskStatus.PROCESSING);
-            task.setWorkerId(workerId);
-            task.setStartedAt(LocalDateTime.now());
-            taskService.updateTask(task);
-            sendTaskUpdate(task);
-            taskService.registerWorker(workerId, "BUSY");
-
-            // Strategy pattern: look up processor by task type, fall back to GENERIC
-            TaskProcessor processor = processors.getOrDefault(task.getType(),
-                    processors.get(GenericTaskProcessor.GENERIC_TYPE));
-            String result = processor.process(task.getPayload());
-
-            task.setStatus(Task.TaskStatus.COMPLETED);
-            task.setResult(result);
-            task.setCompletedAt(LocalDateTime.now());
-            task.setExecutionTimeMs(System.currentTimeMillis() - startTime);
-            taskService.updateTask(task);
-            log.info("Task completed: {} in {}ms", task.getId(), task.getExecutionTimeMs());
-
-        } catch (Exception e) {
-            log.error("Task failed: {}", task.getId(), e);
-            handleTaskFailure(task, e, startTime);
+            long throttledMs = rateLimiter != null ? rateLimiter.acquire(processor.getType()) : 0;
+            if (throttledMs > 0) {
+                deferThrottled(task, throttledMs, meters);
+                return;
+            }
+            if (task.getStatus() == Task.TaskStatus.RETRYING) {
+                log.info("Retrying task: {} (attempt {})", task.getId(), task.getRetryCount() + 1);
+            }
+
+            TaskField[] finalFields;
+            try {
+                task.setStatus(Task.TaskStatus.PROCESSING);
+                task.setWorkerId(workerId);
+                task.setStartedAt(LocalDateTime.now());
+                updates.stage(task, TaskField.STATUS, TaskField.WORKER_ID, TaskField.STARTED_AT);
+                if (task.getRetryCount() == 0 && task.getCreatedAt() != null) {
+                    meters.recordQueueWait(priority, ChronoUnit.MILLIS.between(task.getCreatedAt(), task.getStartedAt()));
+                }
+
+                String result = processor.process(task.getPayload());
+
+                task.setStatus(Task.TaskStatus.COMPLETED);
+                task.setResult(result);
+                task.setCompletedAt(LocalDateTime.now());
+                task.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+                finalFields = new TaskField[] {TaskField.STATUS, TaskField.RESULT, TaskField.COMPLETED_AT, TaskField.EXECUTION_TIME_MS};
+                log.info("Task completed: {} in {}ms", task.getId(), task.getExecutionTimeMs());
+
+            } catch (Exception e) {
+                log.error("Task failed: {}", task.getId(), e);
+                finalFields = handleTaskFailure(task, e, startTime);
+            }
+            meters.recordAttempt(priority, task.getExecutionTimeMs(), task.getStatus());
+
+            awaitWritten(task, finalFields);
+            if (task.getStatus() == Task.TaskStatus.RETRYING) {
+                scheduleRetry(task);
+            }
         } finally {
-            taskService.registerWorker(workerId, "ACTIVE");
-            sendTaskUpdate(task);
+            leases.release(task.getId());
+            updates.setWorkerStatus(workerId, running.decrementAndGet() > 0 ? "BUSY" : "ACTIVE");
         }
     }
 
-    private void handleTaskFailure(Task task, Exception e, long startTime) {
+    /**
+     * Re-enqueues a task whose type has no rate-limit token once the bucket has refilled. The
+     * jitter spreads a throttled burst so it does not come back all at once.
+     */
+    private void deferThrottled(Task task, long waitMs, TaskMetrics.ProcessorMeters meters) {
+        long delayMs = waitMs + (rateLimitJitterMs > 0 ? ThreadLocalRandom.current().nextLong(rateLimitJitterMs) : 0);
+        retryQueue.schedule(task.getId(), delayMs);
+        meters.recordThrottled();
+        log.debug("Task {} rate limited ({}), deferred {}ms", task.getId(), task.getType(), delayMs);
+    }
+
+    /** Strategy pattern: the processor registered for the task type, GENERIC if there is none. */
+    TaskProcessor processorFor(String type) {
+        return processors.getOrDefault(type, processors.get(GenericTaskProcessor.GENERIC_TYPE));
+    }
+
+    /** Sets the failure state and returns the fields it changed. */
+    private TaskField[] handleTaskFailure(Task task, Exception e, long startTime) {
         task.setError(e.getMessage());
         task.setExecutionTimeMs(System.currentTimeMillis() - startTime);
 
         if (task.getRetryCount() < task.getMaxRetries()) {
             task.setRetryCount(task.getRetryCount() + 1);
             task.setStatus(Task.TaskStatus.RETRYING);
-            taskService.updateTask(task);
-
-            // Enforce exponential backoff delay before re-enqueueing.
-            // Previously the delay was calculated but the send was immediate.
-            long delaySeconds = (long) Math.pow(2, task.getRetryCount()); // 2, 4, 8 seconds
-            log.info("Task {} scheduled for retry in {}s (attempt {})",
-                    task.getId(), delaySeconds, task.getRetryCount());
-
-            final Task taskToRetry = task;
-            retryScheduler.schedule(() -> {
-                try {
-                    String taskJson = objectMapper.writeValueAsString(taskToRetry);
-                    kafkaTemplate.send(RETRY_TOPIC, taskToRetry.getId(), taskJson);
-                } catch (JsonProcessingException ex) {
-                    log.error("Failed to enqueue retry for task: {}", taskToRetry.getId(), ex);
-                }
-            }, delaySeconds, TimeUnit.SECONDS);
-
-        } else {
-            task.setStatus(Task.TaskStatus.FAILED);
-            taskService.updateTask(task);
-            log.error("Task failed permanently after {} attempts: {}", task.getMaxRetries(), task.getId());
+            return new TaskField[] {TaskField.STATUS, TaskField.RETRY_COUNT, TaskField.ERROR, TaskField.EXECUTION_TIME_MS};
         }
+        task.setStatus(Task.TaskStatus.FAILED);
+        log.error("Task failed permanently after {} attempts: {}", task.getMaxRetries(), task.getId());
+        return new TaskField[] {TaskField.STATUS, TaskField.ERROR, TaskField.EXECUTION_TIME_MS};
     }
 
-    private void sendTaskUpdate(Task task) {
+    /**
+     * Blocks until the final state has reached Redis. A failed buffered write is retried
+     * synchronously before the caller releases the lease.
+     */
+    private void awaitWritten(Task task, TaskField[] fields) {
         try {
-            messagingTemplate.convertAndSend("/topic/task-updates", task);
-        } catch (Exception e) {
-            log.error("Failed to send WebSocket task update for: {}", task.getId(), e);
+            updates.stage(task, fields).join();
+        } catch (CompletionException e) {
+            log.warn("Buffered write failed for task {}, writing through", task.getId(), e.getCause());
+            taskService.updateTask(task, fields);
         }
     }
+
+    private void scheduleRetry(Task task) {
+        // Enforce exponential backoff delay before re-enqueueing.
+        // The durable RetryQueue publishes to task-retry once the delay has passed,
+        // and keeps the retry across a worker restart.
+        long delaySeconds = (long) Math.pow(2, task.getRetryCount()); // 2, 4, 8 seconds
+        retryQueue.schedule(task.getId(), TimeUnit.SECONDS.toMillis(delaySeconds));
+        log.info("Task {} scheduled for retry in {}s (attempt {})",
+                task.getId(), delaySeconds, task.getRetryCount());
+    }
 }
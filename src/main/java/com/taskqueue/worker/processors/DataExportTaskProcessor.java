@@ -20,4 +20,14 @@ public class DataExportTaskProcessor implements TaskProcessor {
         Thread.sleep(3000);
         return "Exported " + recordCount + " records in " + format + " format";
     }
+
+    @Override
+    public int maxConcurrency() {
+        return 4;
+    }
+
+    @Override
+    public int queueCapacity() {
+        return 20;
+    }
 }
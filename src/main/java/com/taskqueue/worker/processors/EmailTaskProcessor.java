@@ -20,4 +20,15 @@ public class EmailTaskProcessor implements TaskProcessor {
         Thread.sleep(2000);
         return "Email sent to " + recipient + " with subject: " + subject;
     }
+
+    // The SMTP relay answers 429 above its sending quota — stay below it across the cluster
+    @Override
+    public double ratePerSecond() {
+        return 10;
+    }
+
+    @Override
+    public int rateBurst() {
+        return 20;
+    }
 }
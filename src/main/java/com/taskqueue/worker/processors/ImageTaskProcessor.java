@@ -20,4 +20,14 @@ public class ImageTaskProcessor implements TaskProcessor {
         Thread.sleep(5000);
         return "Image processed: " + imageUrl + " with operation: " + operation;
     }
+
+    @Override
+    public int maxConcurrency() {
+        return 4;
+    }
+
+    @Override
+    public int queueCapacity() {
+        return 20;
+    }
 }
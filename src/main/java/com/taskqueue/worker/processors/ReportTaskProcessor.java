@@ -20,4 +20,15 @@ public class ReportTaskProcessor implements TaskProcessor {
         Thread.sleep(8000);
         return "Generated " + reportType + " report for " + dateRange;
     }
+
+    // 8s per report — four slots at most, so a burst of reports leaves the pool to the other types
+    @Override
+    public int maxConcurrency() {
+        return 4;
+    }
+
+    @Override
+    public int queueCapacity() {
+        return 20;
+    }
 }
@@ -0,0 +1,34 @@
+-- Takes one token from a task type's bucket. Returns 0 if granted, else the millis until the
+-- next token. The bucket refills continuously at rate tokens/s up to burst; a limit set at
+-- runtime in the limits hash wins over the caller's configured one. Rate 0 = unlimited.
+-- KEYS[1] = bucket hash (tokens, ts), KEYS[2] = runtime limits hash ({type}:rate, {type}:burst)
+-- ARGV[1] = task type, ARGV[2] = configured rate (tokens/s), ARGV[3] = configured burst, ARGV[4] = now (epoch millis)
+local rate  = tonumber(redis.call('HGET', KEYS[2], ARGV[1] .. ':rate') or ARGV[2])
+local burst = tonumber(redis.call('HGET', KEYS[2], ARGV[1] .. ':burst') or ARGV[3])
+if rate <= 0 then
+    return 0
+end
+if burst < 1 then
+    burst = 1
+end
+
+local now = tonumber(ARGV[4])
+local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(state[1]) or burst
+local ts = tonumber(state[2]) or now
+-- A node whose clock is behind the last writer's gets no refill rather than a negative one
+if now > ts then
+    tokens = math.min(burst, tokens + (now - ts) * rate / 1000)
+    ts = now
+end
+
+local wait = 0
+if tokens >= 1 then
+    tokens = tokens - 1
+else
+    wait = math.ceil((1 - tokens) * 1000 / rate)
+end
+redis.call('HMSET', KEYS[1], 'tokens', tostring(tokens), 'ts', ts)
+-- An idle bucket is full again after burst / rate seconds — let it expire then
+redis.call('PEXPIRE', KEYS[1], math.ceil(burst * 1000 / rate) + 1000)
+return wait
@@ -0,0 +1,11 @@
+-- Claims up to ARGV[2] due ids of a sorted set scored by due time, by pushing their score out to
+-- a redelivery deadline. A claimed id that is never released becomes due again at that deadline,
+-- so a poller that dies mid-batch loses nothing. Each due id is handed to exactly one caller.
+-- Shared by the retry queue (tasks:retry) and the outbox relay (tasks:outbox).
+-- KEYS[1] = sorted set of ids scored by due time (epoch millis)
+-- ARGV[1] = now (epoch millis), ARGV[2] = batch size, ARGV[3] = redelivery deadline (epoch millis)
+local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+for _, id in ipairs(ids) do
+    redis.call('ZADD', KEYS[1], ARGV[3], id)
+end
+return ids
@@ -0,0 +1,8 @@
+-- Removes and returns up to ARGV[2] expired leases, so each one is recovered by exactly one node.
+-- KEYS[1] = lease sorted set
+-- ARGV[1] = now (epoch millis), ARGV[2] = batch size
+local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+if #ids > 0 then
+    redis.call('ZREM', KEYS[1], unpack(ids))
+end
+return ids
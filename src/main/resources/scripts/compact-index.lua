@@ -0,0 +1,15 @@
+-- Removes index entries scored at or below ARGV[1] whose task key no longer exists. Newer entries
+-- are never examined: a task key expires TTL after its last write, which is after createdAt.
+-- Survivors are skipped by offset, so each call examines at most ARGV[3] entries.
+-- KEYS[1] = index sorted set
+-- ARGV[1] = cutoff score (epoch millis), ARGV[2] = offset, ARGV[3] = batch size, ARGV[4] = task key prefix
+-- Returns {entries examined, entries removed}
+local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', ARGV[2], ARGV[3])
+local removed = 0
+for _, id in ipairs(ids) do
+    if redis.call('EXISTS', ARGV[4] .. id) == 0 then
+        redis.call('ZREM', KEYS[1], id)
+        removed = removed + 1
+    end
+end
+return {#ids, removed}
@@ -0,0 +1,43 @@
+-- Deletes a task and its claim-checked values, removes it from the task index and takes it out of the
+-- statistics hash and status index.
+-- KEYS[1] = task key, KEYS[2] = statistics hash, KEYS[3] = task index sorted set
+-- ARGV[1] = task id, ARGV[2] = status index key prefix, ARGV[3] = near-cache invalidation channel
+
+-- Status and executionTimeMs of a legacy string value (same as save-task.lua)
+local function legacyHeader(value)
+    if string.sub(value, 1, 1) == '{' then
+        return string.match(value, '"status":"(%u+)"'), tonumber(string.match(value, '"executionTimeMs":(%d+)}$')) or 0
+    end
+    local n = string.byte(value, 2)
+    local time = struct.unpack('>i8', value, 3 + n)
+    return n > 0 and string.sub(value, 3, 2 + n) or nil, time
+end
+
+local kind = redis.call('TYPE', KEYS[1]).ok
+local removed = redis.call('ZREM', KEYS[3], ARGV[1])
+local oldStatus = nil
+local oldTime = 0
+if kind == 'hash' then
+    local old = redis.call('HMGET', KEYS[1], 'status', 'executionTimeMs', 'blobs')
+    oldStatus = old[1] or nil
+    oldTime = tonumber(old[2]) or 0
+    for name in string.gmatch(old[3] or '', '[^,]+') do
+        redis.call('DEL', KEYS[1] .. ':' .. name)
+    end
+elseif kind == 'string' then
+    oldStatus, oldTime = legacyHeader(redis.call('GET', KEYS[1]))
+else
+    return removed > 0 and 1 or 0
+end
+redis.call('DEL', KEYS[1])
+redis.call('PUBLISH', ARGV[3], ARGV[1])
+
+redis.call('HINCRBY', KEYS[2], 'total', -1)
+if oldStatus then
+    redis.call('HINCRBY', KEYS[2], oldStatus, -1)
+    redis.call('ZREM', ARGV[2] .. oldStatus, ARGV[1])
+end
+if oldStatus == 'COMPLETED' then
+    redis.call('HINCRBY', KEYS[2], 'completedExecutionTimeMs', -oldTime)
+end
+return 1
@@ -0,0 +1,29 @@
+-- Reads many tasks in one call, whatever their storage layout.
+-- KEYS = task keys, ARGV[1] = '1' to fetch claim-checked values, ARGV[2..] = hash fields to read, in order
+-- Per key: {'h', value..., claim-checked value...} for a task hash, {'s', value} for a legacy
+-- whole-task string, {} if missing. A claim-check reference is byte 0xFF then the field name; its
+-- value lives at {task key}:{field name} and is appended to the row in field order when fetched.
+local resolve = ARGV[1] == '1'
+local fields = {unpack(ARGV, 2)}
+local rows = {}
+for i, key in ipairs(KEYS) do
+    local kind = redis.call('TYPE', key).ok
+    if kind == 'hash' then
+        local row = redis.call('HMGET', key, unpack(fields))
+        if resolve then
+            for j = 1, #fields do
+                local value = row[j]
+                if value and string.byte(value, 1) == 255 then
+                    table.insert(row, redis.call('GET', key .. ':' .. string.sub(value, 2)))
+                end
+            end
+        end
+        table.insert(row, 1, 'h')
+        rows[i] = row
+    elseif kind == 'string' then
+        rows[i] = {'s', redis.call('GET', key)}
+    else
+        rows[i] = {}
+    end
+end
+return rows
@@ -0,0 +1,13 @@
+-- Removes outbox entries whose message the broker has acked, but only entries still carrying the
+-- claim the message was sent under — an id queued again since (e.g. by a retry) is left alone.
+-- KEYS[1] = outbox sorted set
+-- ARGV = task id / claim deadline (epoch millis) pairs
+local released = 0
+for i = 1, #ARGV, 2 do
+    local score = redis.call('ZSCORE', KEYS[1], ARGV[i])
+    if score and tonumber(score) == tonumber(ARGV[i + 1]) then
+        redis.call('ZREM', KEYS[1], ARGV[i])
+        released = released + 1
+    end
+end
+return released
@@ -0,0 +1,13 @@
+-- Removes published retries, but only entries still carrying the claim's deadline —
+-- an id rescheduled in the meantime (new failure, new due time) is left alone.
+-- KEYS[1] = retry sorted set
+-- ARGV[1] = claim deadline (epoch millis), ARGV[2..n] = task ids
+local released = 0
+for i = 2, #ARGV do
+    local score = redis.call('ZSCORE', KEYS[1], ARGV[i])
+    if score and tonumber(score) == tonumber(ARGV[1]) then
+        redis.call('ZREM', KEYS[1], ARGV[i])
+        released = released + 1
+    end
+end
+return released
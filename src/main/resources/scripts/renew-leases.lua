@@ -0,0 +1,11 @@
+-- Extends the leases this worker still holds. Ids already reaped are not resurrected.
+-- KEYS[1] = lease sorted set
+-- ARGV[1] = new expiry (epoch millis), ARGV[2..n] = task ids
+local renewed = 0
+for i = 2, #ARGV do
+    if redis.call('ZSCORE', KEYS[1], ARGV[i]) then
+        redis.call('ZADD', KEYS[1], ARGV[1], ARGV[i])
+        renewed = renewed + 1
+    end
+end
+return renewed
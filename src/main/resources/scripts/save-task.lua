@@ -0,0 +1,135 @@
+-- Writes task fields to the task:{id} hash and keeps the statistics hash and status index in step
+-- with its status, atomically. A full write also converts a legacy whole-task string value and
+-- (re)adds the id to the time-ordered task index.
+-- KEYS[1] = task key, KEYS[2] = statistics hash, KEYS[3] = task index sorted set, KEYS[4] = outbox sorted set,
+-- optional KEYS[5] = idempotency key, claimed with SET NX for ARGV[1] seconds before anything is written
+-- ARGV[1] = ttl seconds, ARGV[2] = status index key prefix, ARGV[3] = createdAt epoch millis
+-- (index score, '' = keep the current score), ARGV[4] = task id, ARGV[5] = 'full' | 'partial',
+-- ARGV[6] = near-cache invalidation channel, ARGV[7] = outbox score — the task is queued for publishing
+-- in the same step ('' = not queued), ARGV[8] = n fields to set, ARGV[9] = m claim-checked values,
+-- ARGV[10 .. 9+2n] = field/value pairs, then m field/value pairs stored at {task key}:{field} (the hash
+-- holds a reference for those), remaining ARGV = fields to delete
+-- The hash field 'blobs' lists the fields currently claim-checked, so their keys are replaced when the
+-- field is rewritten, deleted with the task and kept on the task's TTL.
+-- Returns 1, -1 when a partial write finds no hash to update — the caller then writes in full —
+-- or 0 when the idempotency key is already taken and nothing was written.
+
+-- Status and executionTimeMs of a legacy string value, in either TaskCodec format
+local function legacyHeader(value)
+    if string.sub(value, 1, 1) == '{' then
+        -- JSON: status is serialized before payload, executionTimeMs is the last property
+        return string.match(value, '"status":"(%u+)"'), tonumber(string.match(value, '"executionTimeMs":(%d+)}$')) or 0
+    end
+    -- Binary: version byte, status length and name, then executionTimeMs as a big-endian int64
+    local n = string.byte(value, 2)
+    local time = struct.unpack('>i8', value, 3 + n)
+    return n > 0 and string.sub(value, 3, 2 + n) or nil, time
+end
+
+if KEYS[5] and not redis.call('SET', KEYS[5], ARGV[4], 'NX', 'EX', ARGV[1]) then
+    return 0
+end
+
+local kind = redis.call('TYPE', KEYS[1]).ok
+local oldStatus = nil
+local oldTime = 0
+local oldBlobs = ''
+if kind == 'hash' then
+    local old = redis.call('HMGET', KEYS[1], 'status', 'executionTimeMs', 'blobs')
+    oldStatus = old[1] or nil
+    oldTime = tonumber(old[2]) or 0
+    oldBlobs = old[3] or ''
+elseif ARGV[5] ~= 'full' then
+    return -1
+elseif kind == 'string' then
+    oldStatus, oldTime = legacyHeader(redis.call('GET', KEYS[1]))
+    redis.call('DEL', KEYS[1])
+else
+    redis.call('HINCRBY', KEYS[2], 'total', 1)
+end
+
+local n = tonumber(ARGV[8])
+local m = tonumber(ARGV[9])
+local firstBlob = 10 + 2 * n
+local firstDelete = firstBlob + 2 * m
+if n > 0 then
+    redis.call('HMSET', KEYS[1], unpack(ARGV, 10, firstBlob - 1))
+end
+if #ARGV >= firstDelete then
+    redis.call('HDEL', KEYS[1], unpack(ARGV, firstDelete))
+end
+redis.call('EXPIRE', KEYS[1], ARGV[1])
+
+-- Claim-checked values: drop those whose field this write replaces, store the new ones
+if oldBlobs ~= '' or m > 0 then
+    local held = {}
+    for name in string.gmatch(oldBlobs, '[^,]+') do
+        held[name] = true
+    end
+    local function release(name)
+        if held[name] then
+            redis.call('DEL', KEYS[1] .. ':' .. name)
+            held[name] = nil
+        end
+    end
+    for i = 10, firstBlob - 1, 2 do
+        release(ARGV[i])
+    end
+    for i = firstDelete, #ARGV do
+        release(ARGV[i])
+    end
+    for i = firstBlob, firstDelete - 1, 2 do
+        redis.call('SET', KEYS[1] .. ':' .. ARGV[i], ARGV[i + 1], 'EX', ARGV[1])
+        held[ARGV[i]] = true
+    end
+    local blobs = {}
+    for name in pairs(held) do
+        redis.call('EXPIRE', KEYS[1] .. ':' .. name, ARGV[1])
+        table.insert(blobs, name)
+    end
+    table.sort(blobs)
+    if #blobs > 0 then
+        redis.call('HSET', KEYS[1], 'blobs', table.concat(blobs, ','))
+    else
+        redis.call('HDEL', KEYS[1], 'blobs')
+    end
+end
+
+redis.call('PUBLISH', ARGV[6], ARGV[4])
+if ARGV[7] ~= '' then
+    redis.call('ZADD', KEYS[4], ARGV[7], ARGV[4])
+end
+
+local new = redis.call('HMGET', KEYS[1], 'status', 'executionTimeMs')
+local newStatus = new[1] or nil
+local newTime = tonumber(new[2]) or 0
+
+-- Index keys are derived from the status, so this script assumes a single (non-cluster) Redis
+local score = ARGV[3]
+if score == '' and oldStatus then
+    score = redis.call('ZSCORE', ARGV[2] .. oldStatus, ARGV[4]) or '0'
+end
+if oldStatus ~= newStatus then
+    if oldStatus then
+        redis.call('HINCRBY', KEYS[2], oldStatus, -1)
+        redis.call('ZREM', ARGV[2] .. oldStatus, ARGV[4])
+    end
+    if newStatus then
+        redis.call('HINCRBY', KEYS[2], newStatus, 1)
+    end
+end
+if newStatus and score ~= '' then
+    redis.call('ZADD', ARGV[2] .. newStatus, score, ARGV[4])
+end
+if ARGV[5] == 'full' and ARGV[3] ~= '' then
+    redis.call('ZADD', KEYS[3], ARGV[3], ARGV[4])
+end
+
+-- Running execution-time sum over COMPLETED tasks, for the average
+if oldStatus == 'COMPLETED' then
+    redis.call('HINCRBY', KEYS[2], 'completedExecutionTimeMs', -oldTime)
+end
+if newStatus == 'COMPLETED' then
+    redis.call('HINCRBY', KEYS[2], 'completedExecutionTimeMs', newTime)
+end
+return 1
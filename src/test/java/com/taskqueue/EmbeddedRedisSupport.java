@@ -0,0 +1,53 @@
+package com.taskqueue;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/**
+ * Starts the embedded-redis test dependency on a free port once per test class
+ * and flushes it before every test.
+ */
+public abstract class EmbeddedRedisSupport {
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    protected static StringRedisTemplate redisTemplate;
+    protected static int redisPort;
+
+    @BeforeAll
+    protected static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisPort = port;
+        redisServer = RedisServer.builder().port(port).setting("bind 127.0.0.1").build();
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory("127.0.0.1", port);
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    protected static void stopRedis() {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    protected void flushRedis() {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        });
+    }
+}
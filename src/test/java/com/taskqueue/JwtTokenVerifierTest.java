@@ -0,0 +1,94 @@
+package com.taskqueue;
+
+import com.taskqueue.service.JwtService;
+import com.taskqueue.service.JwtTokenVerifier;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JwtTokenVerifierTest {
+
+    private static final String SECRET = "test-secret-that-is-at-least-32-characters";
+
+    private JwtService jwtService;
+    private UserDetailsService userDetailsService;
+    private JwtTokenVerifier verifier;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = spy(new JwtService());
+        ReflectionTestUtils.setField(jwtService, "secretKey", SECRET);
+        ReflectionTestUtils.setField(jwtService, "expirationMs", 60_000L);
+        userDetailsService = mock(UserDetailsService.class);
+        verifier = new JwtTokenVerifier(jwtService, userDetailsService, 100);
+    }
+
+    @Test
+    void testTokenIsParsedOnceAndRoleComesFromTheClaim() {
+        String token = jwtService.generateToken("alice", "ADMIN");
+
+        JwtTokenVerifier.VerifiedToken first = verifier.verify(token);
+        JwtTokenVerifier.VerifiedToken second = verifier.verify(token);
+
+        assertEquals("alice", first.getUsername());
+        assertEquals(List.of(new SimpleGrantedAuthority("ROLE_ADMIN")), first.getAuthorities());
+        assertSame(first, second);
+        verify(jwtService, times(1)).parseClaims(token);
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void testTokenWithoutRoleFallsBackToUserLookup() {
+        String token = Jwts.builder().setSubject("bob")
+                .setIssuedAt(new Date()).setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(SignatureAlgorithm.HS256, SECRET).compact();
+        doReturn(new User("bob", "x", List.of(new SimpleGrantedAuthority("ROLE_USER"))))
+                .when(userDetailsService).loadUserByUsername("bob");
+
+        assertEquals(List.of(new SimpleGrantedAuthority("ROLE_USER")), verifier.verify(token).getAuthorities());
+        verifier.verify(token);
+        verify(userDetailsService, times(1)).loadUserByUsername("bob");
+    }
+
+    @Test
+    void testForgedAndExpiredTokensAreRejected() {
+        String forged = Jwts.builder().setSubject("mallory").claim("role", "ADMIN")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(SignatureAlgorithm.HS256, "some-other-secret-of-at-least-32-chars").compact();
+        String expired = Jwts.builder().setSubject("alice").claim("role", "USER")
+                .setExpiration(new Date(System.currentTimeMillis() - 1000))
+                .signWith(SignatureAlgorithm.HS256, SECRET).compact();
+
+        assertNull(verifier.verify(forged));
+        assertNull(verifier.verify(expired));
+        assertNull(verifier.verify("not.a.jwt"));
+    }
+
+    @Test
+    void testRevokeUserEvictsAndRejectsEarlierTokens() {
+        String old = Jwts.builder().setSubject("alice").claim("role", "USER")
+                .setIssuedAt(new Date(System.currentTimeMillis() - 10_000))
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(SignatureAlgorithm.HS256, SECRET).compact();
+        String other = jwtService.generateToken("bob", "USER");
+        assertNotNull(verifier.verify(old));
+        assertNotNull(verifier.verify(other));
+
+        verifier.revokeUser("alice");
+
+        assertNull(verifier.verify(old));
+        assertNotNull(verifier.verify(other));
+        assertNotNull(verifier.verify(jwtService.generateToken("alice", "USER")));
+    }
+}
@@ -0,0 +1,127 @@
+package com.taskqueue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.taskqueue.codec.FormatDetectingTaskCodec;
+import com.taskqueue.codec.TaskCodec;
+import com.taskqueue.model.TaskField;
+import com.taskqueue.service.TaskNearCache;
+import com.taskqueue.service.TaskService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.util.EnumSet;
+import java.util.Map;
+
+import static com.taskqueue.service.TaskServiceSupport.newTaskService;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Two TaskService "nodes" with their own near-caches over one embedded Redis.
+ */
+class TaskNearCacheTest extends EmbeddedRedisSupport {
+
+    private TaskNearCache cacheA;
+    private TaskNearCache cacheB;
+    private TaskService nodeA;
+    private TaskService nodeB;
+
+    @BeforeEach
+    void setUp() {
+        cacheA = startCache(100);
+        cacheB = startCache(100);
+        nodeA = newNode(cacheA);
+        nodeB = newNode(cacheB);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        cacheA.stop();
+        cacheB.stop();
+    }
+
+    @Test
+    void testRepeatedReadsAreServedLocally() throws InterruptedException {
+        Task task = nodeA.submitTask("GENERIC", Map.of("n", 1), Task.Priority.NORMAL);
+        // Let the submit's own invalidation message arrive — it would void a fill it overlaps
+        Thread.sleep(200);
+
+        Task first = nodeA.getTask(task.getId());
+        first.setStatus(Task.TaskStatus.FAILED); // callers get copies
+        Task second = nodeA.getTask(task.getId());
+
+        assertEquals(Task.TaskStatus.PENDING, second.getStatus());
+        assertEquals(Map.of("n", 1), second.getPayload());
+        Map<String, Object> stats = nodeA.getCacheStatistics();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+        assertEquals(1L, stats.get("size"));
+    }
+
+    @Test
+    void testWriteOnOneNodeInvalidatesTheOther() throws Exception {
+        Task task = nodeA.submitTask("GENERIC", Map.of(), Task.Priority.NORMAL);
+        assertEquals(Task.TaskStatus.PENDING, nodeA.getTask(task.getId()).getStatus());
+
+        assertTrue(nodeB.cancelTask(task.getId()));
+        assertEquals(Task.TaskStatus.CANCELLED, nodeB.getTask(task.getId()).getStatus());
+        awaitStatus(nodeA, task.getId(), Task.TaskStatus.CANCELLED);
+
+        assertTrue(nodeB.deleteTask(task.getId()));
+        for (int i = 0; i < 200 && nodeA.getTask(task.getId()) != null; i++) Thread.sleep(10);
+        assertNull(nodeA.getTask(task.getId()));
+    }
+
+    @Test
+    void testProjectionMissIsNotCached() {
+        Task task = nodeA.submitTask("GENERIC", Map.of("n", 1), Task.Priority.NORMAL);
+
+        assertNull(nodeA.getTask(task.getId(), EnumSet.of(TaskField.STATUS)).getPayload());
+        assertEquals(Map.of("n", 1), nodeA.getTask(task.getId()).getPayload());
+        assertEquals(0L, nodeA.getCacheStatistics().get("hits"));
+    }
+
+    @Test
+    void testDisabledCacheReportsOnlyEnabledFlag() {
+        TaskService plain = newTaskService(mockKafka(), redisTemplate, objectMapper(), codec());
+        Task task = plain.submitTask("GENERIC", Map.of(), Task.Priority.NORMAL);
+        assertNotNull(plain.getTask(task.getId()));
+        assertEquals(Map.of("enabled", false), plain.getCacheStatistics());
+    }
+
+    private void awaitStatus(TaskService node, String id, Task.TaskStatus status) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            if (node.getTask(id).getStatus() == status) return;
+            Thread.sleep(10);
+        }
+        fail("task " + id + " never reached " + status + " through the near-cache");
+    }
+
+    private TaskNearCache startCache(long maxSize) {
+        TaskNearCache cache = new TaskNearCache(redisTemplate.getConnectionFactory(), true, maxSize, 60_000);
+        cache.start();
+        return cache;
+    }
+
+    private TaskService newNode(TaskNearCache cache) {
+        return newTaskService(mockKafka(), redisTemplate, objectMapper(), codec(), cache);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static KafkaTemplate<String, byte[]> mockKafka() {
+        return mock(KafkaTemplate.class);
+    }
+
+    private static ObjectMapper objectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        return objectMapper;
+    }
+
+    private static TaskCodec codec() {
+        return FormatDetectingTaskCodec.forFormat(FormatDetectingTaskCodec.BINARY, objectMapper());
+    }
+}
@@ -0,0 +1,370 @@
+package com.taskqueue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.taskqueue.model.TaskField;
+import com.taskqueue.service.TaskService;
+import com.taskqueue.worker.TaskProcessor;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-to-end load harness: boots the app against embedded Kafka and embedded Redis, drives
+ * POST /tasks open-loop at a fixed rate with a weighted mix of types and priorities, and
+ * reports submit→complete throughput and p50/p99/p999 latency per priority. Latency runs
+ * from each request's scheduled send time to the task's completedAt, so a driver or server
+ * that falls behind shows up in the numbers rather than lowering the load.
+ *
+ * Tagged "load" — left out of the unit test run; `mvn -P load-test test` runs it alone.
+ * Configured through -Dload.* (see README); any -Dload.max-* or -Dload.min-throughput
+ * threshold that is missed fails the run, which makes it a CI gate. The report is also
+ * written to target/load-report.json.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        // Only the packaged config — the application.yml in the repo root (the working directory
+        // under Maven) carries String Kafka serializers
+        "spring.config.location=classpath:/",
+        // The security beans form a cycle the main app is also started with this flag for
+        "spring.main.allow-circular-references=true",
+        "logging.level.com.taskqueue=WARN",
+        "spring.jpa.show-sql=false"
+})
+@EmbeddedKafka(partitions = 2, bootstrapServersProperty = "spring.kafka.bootstrap-servers", topics = {
+        "task-queue-urgent", "task-queue-high", "task-queue-normal", "task-queue-low", "task-retry"
+})
+@Import(TaskPipelineLoadTest.StubProcessors.class)
+class TaskPipelineLoadTest extends EmbeddedRedisSupport {
+
+    // type:weight:latencyMs — one stub processor per type, sleeping for its latency
+    static final String TYPES          = System.getProperty("load.types", "LOAD_FAST:70:5,LOAD_MEDIUM:25:50,LOAD_SLOW:5:500");
+    static final String PRIORITIES     = System.getProperty("load.priorities", "URGENT:10,HIGH:20,NORMAL:50,LOW:20");
+    static final double RATE           = Double.parseDouble(System.getProperty("load.rate", "100"));
+    static final int TASKS             = Integer.getInteger("load.tasks", 2000);
+    static final int WARMUP_TASKS      = Integer.getInteger("load.warmup-tasks", 200);
+    static final long DRAIN_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(Integer.getInteger("load.drain-timeout-s", 120));
+    static final int PAYLOAD_BYTES     = Integer.getInteger("load.payload-bytes", 256);
+
+    private static final Set<TaskField> REPORT_FIELDS = EnumSet.of(TaskField.STATUS, TaskField.PRIORITY, TaskField.COMPLETED_AT);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry listenerRegistry;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+
+    @DynamicPropertySource
+    static void redisProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.redis.port", () -> redisPort);
+    }
+
+    @Test
+    void testSubmitToCompleteThroughputAndLatency() throws Exception {
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+            ContainerTestUtils.waitForAssignment(container, 2);
+        }
+        String token = login();
+        Random random = new Random(42);
+        List<String> types = weighted(TYPES, random);
+        List<String> priorities = weighted(PRIORITIES, random);
+
+        drive(token, WARMUP_TASKS, types, priorities, random);
+        awaitFinished(WARMUP_TASKS);
+
+        Submitted run = drive(token, TASKS, types, priorities, random);
+        awaitFinished(WARMUP_TASKS + TASKS);
+
+        Map<String, Object> report = report(run);
+        File file = new File("target/load-report.json");
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+        System.out.println(objectMapper.writeValueAsString(report));
+
+        List<String> violations = violations(report);
+        assertTrue(violations.isEmpty(), "Load thresholds missed: " + violations);
+    }
+
+    // ── Driver ────────────────────────────────────────────────────────────────
+
+    /** Ids, priorities and scheduled send times (epoch ms) of one run. */
+    private static final class Submitted {
+        final String[] ids;
+        final Task.Priority[] priorities;
+        final long[] scheduledAt;
+        int rejected;
+
+        Submitted(int n) {
+            ids         = new String[n];
+            priorities  = new Task.Priority[n];
+            scheduledAt = new long[n];
+        }
+    }
+
+    /** Open-loop: request i is sent at start + i / rate, whether or not earlier ones returned. */
+    private Submitted drive(String token, int n, List<String> types, List<String> priorities, Random random) {
+        Submitted run = new Submitted(n);
+        List<CompletableFuture<Void>> responses = new ArrayList<>(n);
+        URI uri = URI.create("http://localhost:" + port + "/tasks");
+        String padding = "x".repeat(PAYLOAD_BYTES);
+        long startNanos = System.nanoTime();
+        long startMs = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            long offsetNanos = (long) (i * 1e9 / RATE);
+            LockSupport.parkNanos(startNanos + offsetNanos - System.nanoTime());
+
+            Task.Priority priority = Task.Priority.valueOf(priorities.get(random.nextInt(priorities.size())));
+            String body = "{\"type\":\"" + types.get(random.nextInt(types.size())) + "\",\"priority\":\"" + priority
+                    + "\",\"payload\":{\"seq\":" + i + ",\"padding\":\"" + padding + "\"}}";
+            int index = i;
+            run.priorities[i]  = priority;
+            run.scheduledAt[i] = startMs + TimeUnit.NANOSECONDS.toMillis(offsetNanos);
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .header("Authorization", "Bearer " + token)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            responses.add(http.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenAccept(response -> {
+                if (response.statusCode() == 200) {
+                    run.ids[index] = readTree(response.body()).get("id").asText();
+                }
+            }));
+        }
+        CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).join();
+        run.rejected = (int) Arrays.stream(run.ids).filter(id -> id == null).count();
+        return run;
+    }
+
+    private void awaitFinished(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            Map<String, Object> stats = taskService.getTaskStatistics();
+            if ((long) stats.get("completed") + (long) stats.get("failed") >= expected) return;
+            Thread.sleep(50);
+        }
+        fail("Tasks not finished within " + DRAIN_TIMEOUT_MS + "ms: " + taskService.getTaskStatistics());
+    }
+
+    // ── Report ────────────────────────────────────────────────────────────────
+
+    private Map<String, Object> report(Submitted run) {
+        Map<Task.Priority, List<Long>> latencies = new EnumMap<>(Task.Priority.class);
+        int completed = 0;
+        long lastCompletedAt = 0;
+        List<String> ids = new ArrayList<>(run.ids.length);
+        List<Integer> indexes = new ArrayList<>(run.ids.length);
+        for (int i = 0; i < run.ids.length; i++) {
+            if (run.ids[i] != null) {
+                ids.add(run.ids[i]);
+                indexes.add(i);
+            }
+        }
+        for (int from = 0; from < ids.size(); from += 1000) {
+            List<Task> tasks = taskService.getTasks(ids.subList(from, Math.min(from + 1000, ids.size())), REPORT_FIELDS);
+            for (int j = 0; j < tasks.size(); j++) {
+                Task task = tasks.get(j);
+                if (task.getStatus() != Task.TaskStatus.COMPLETED) continue;
+                int i = indexes.get(from + j);
+                long completedAt = task.getCompletedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                latencies.computeIfAbsent(run.priorities[i], p -> new ArrayList<>()).add(completedAt - run.scheduledAt[i]);
+                lastCompletedAt = Math.max(lastCompletedAt, completedAt);
+                completed++;
+            }
+        }
+        double seconds = Math.max(1, lastCompletedAt - run.scheduledAt[0]) / 1000.0;
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("rate", RATE);
+        config.put("tasks", TASKS);
+        config.put("types", TYPES);
+        config.put("priorities", PRIORITIES);
+        config.put("payloadBytes", PAYLOAD_BYTES);
+
+        Map<String, Object> byPriority = new LinkedHashMap<>();
+        for (Map.Entry<Task.Priority, List<Long>> entry : latencies.entrySet()) {
+            long[] sorted = entry.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("count", sorted.length);
+            row.put("p50Ms",  percentile(sorted, 0.50));
+            row.put("p99Ms",  percentile(sorted, 0.99));
+            row.put("p999Ms", percentile(sorted, 0.999));
+            row.put("maxMs",  sorted[sorted.length - 1]);
+            byPriority.put(entry.getKey().name(), row);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config", config);
+        report.put("submitted", run.ids.length);
+        report.put("rejected", run.rejected);
+        report.put("completed", completed);
+        report.put("throughputPerSec", Math.round(completed / seconds * 10) / 10.0);
+        report.put("latency", byPriority);
+        return report;
+    }
+
+    /** Thresholds from -Dload.min-throughput and -Dload.max-{p50,p99,p999}-ms[.PRIORITY]. */
+    @SuppressWarnings("unchecked")
+    private static List<String> violations(Map<String, Object> report) {
+        List<String> violations = new ArrayList<>();
+        int submitted = (int) report.get("submitted");
+        if ((int) report.get("completed") < submitted) {
+            violations.add("completed " + report.get("completed") + " of " + submitted);
+        }
+        String minThroughput = System.getProperty("load.min-throughput");
+        if (minThroughput != null && (double) report.get("throughputPerSec") < Double.parseDouble(minThroughput)) {
+            violations.add("throughput " + report.get("throughputPerSec") + "/s < " + minThroughput);
+        }
+        Map<String, Object> latency = (Map<String, Object>) report.get("latency");
+        for (Map.Entry<String, Object> entry : latency.entrySet()) {
+            Map<String, Object> row = (Map<String, Object>) entry.getValue();
+            for (String metric : new String[] {"p50", "p99", "p999"}) {
+                String limit = System.getProperty("load.max-" + metric + "-ms." + entry.getKey(),
+                        System.getProperty("load.max-" + metric + "-ms"));
+                if (limit != null && (long) row.get(metric + "Ms") > Long.parseLong(limit)) {
+                    violations.add(entry.getKey() + " " + metric + " " + row.get(metric + "Ms") + "ms > " + limit + "ms");
+                }
+            }
+        }
+        return violations;
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    // ── Setup helpers ─────────────────────────────────────────────────────────
+
+    private String login() throws Exception {
+        String credentials = "{\"username\":\"load\",\"password\":\"load-password\",\"email\":\"load@example.com\"}";
+        post("/auth/register", credentials);
+        return readTree(post("/auth/login", credentials)).get("token").asText();
+    }
+
+    private String post(String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return http.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    private JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unexpected response: " + json, e);
+        }
+    }
+
+    /** "A:70,B:30" as a 100-entry list to draw from — names repeated by weight. */
+    private static List<String> weighted(String spec, Random random) {
+        List<String> names = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        for (String item : spec.split(",")) {
+            String[] parts = item.trim().split(":");
+            names.add(parts[0]);
+            weights.add(Integer.parseInt(parts[1]));
+        }
+        int total = weights.stream().mapToInt(Integer::intValue).sum();
+        List<String> draw = new ArrayList<>(100);
+        for (int i = 0; i < names.size(); i++) {
+            for (int k = 0; k < Math.round(100.0 * weights.get(i) / total); k++) {
+                draw.add(names.get(i));
+            }
+        }
+        return draw;
+    }
+
+    // ── Stub processors ───────────────────────────────────────────────────────
+
+    /** Registers one StubProcessor bean per type in load.types, before TaskWorker collects them. */
+    @TestConfiguration
+    static class StubProcessors {
+
+        @Bean
+        static BeanDefinitionRegistryPostProcessor stubProcessorRegistrar() {
+            return new BeanDefinitionRegistryPostProcessor() {
+                @Override
+                public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) {
+                    for (String item : TYPES.split(",")) {
+                        String[] parts = item.trim().split(":");
+                        registry.registerBeanDefinition("stubProcessor" + parts[0], BeanDefinitionBuilder
+                                .genericBeanDefinition(StubProcessor.class)
+                                .addConstructorArgValue(parts[0])
+                                .addConstructorArgValue(Long.parseLong(parts[2]))
+                                .getBeanDefinition());
+                    }
+                }
+
+                @Override
+                public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+                }
+            };
+        }
+    }
+
+    static final class StubProcessor implements TaskProcessor {
+        private final String type;
+        private final long latencyMs;
+
+        StubProcessor(String type, long latencyMs) {
+            this.type      = type;
+            this.latencyMs = latencyMs;
+        }
+
+        @Override
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        public String process(Map<String, Object> payload) throws Exception {
+            Thread.sleep(latencyMs);
+            return "ok";
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.taskqueue;
+
+import ch.qos.logback.classic.Logger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.taskqueue.codec.FormatDetectingTaskCodec;
+import com.taskqueue.service.TaskService;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.taskqueue.service.TaskServiceSupport.newTaskService;
+
+/**
+ * TaskService against embedded Redis, so every op includes the real Lua scripts and a
+ * loopback round trip. Kafka sends are acked at once. The store holds `tasks` tasks,
+ * rebuilt before each iteration; `payloadBytes` above 16384 takes the claim-check path.
+ * getAllTasks reads a 100-task page and getTaskStatistics the counters hash — neither
+ * should grow with the store.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskServiceBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"256", "32768"})
+    private int payloadBytes;
+
+    @Param({"1000", "20000"})
+    private int tasks;
+
+    private TaskService taskService;
+    private Map<String, Object> payload;
+
+    @Setup(Level.Trial)
+    public void startRedis() throws Exception {
+        ((Logger) LoggerFactory.getLogger("com.taskqueue")).setLevel(ch.qos.logback.classic.Level.WARN);
+        EmbeddedRedisSupport.startRedis();
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        taskService = newTaskService(new AckingKafkaTemplate(), EmbeddedRedisSupport.redisTemplate, objectMapper,
+                FormatDetectingTaskCodec.forFormat(FormatDetectingTaskCodec.JSON, objectMapper));
+        payload = new HashMap<>();
+        payload.put("recipient", "user@example.com");
+        payload.put("body", "x".repeat(payloadBytes));
+    }
+
+    @Setup(Level.Iteration)
+    public void fillStore() {
+        EmbeddedRedisSupport.redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        });
+        taskService.relayOutbox(1); // releases the acks queued for the flushed entries
+        List<Task> batch = new ArrayList<>(1000);
+        for (int i = 0; i < tasks; i++) {
+            batch.add(taskService.newTask("EMAIL_SEND", payload, Task.Priority.values()[i % 4]));
+            if (batch.size() == 1000) {
+                taskService.submitTasks(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) taskService.submitTasks(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopRedis() {
+        EmbeddedRedisSupport.stopRedis();
+    }
+
+    @Benchmark
+    public Task submitTask() {
+        return taskService.submitTask("EMAIL_SEND", payload, Task.Priority.NORMAL);
+    }
+
+    @Benchmark
+    public List<Task> getAllTasks() {
+        return taskService.getAllTasks(0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Map<String, Object> getTaskStatistics() {
+        return taskService.getTaskStatistics();
+    }
+
+    /** Acks every send immediately, without a producer. */
+    static final class AckingKafkaTemplate extends KafkaTemplate<String, byte[]> {
+
+        AckingKafkaTemplate() {
+            super(new DefaultKafkaProducerFactory<>(Map.of()));
+        }
+
+        @Override
+        public ListenableFuture<SendResult<String, byte[]>> send(String topic, String key, byte[] data) {
+            SettableListenableFuture<SendResult<String, byte[]>> future = new SettableListenableFuture<>();
+            future.set(null);
+            return future;
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+}
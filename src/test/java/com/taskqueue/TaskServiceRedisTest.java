@@ -0,0 +1,487 @@
+package com.taskqueue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.taskqueue.codec.FormatDetectingTaskCodec;
+import com.taskqueue.codec.TaskCodec;
+import com.taskqueue.model.AckMode;
+import com.taskqueue.model.BatchSubmissionResult;
+import com.taskqueue.model.TaskField;
+import com.taskqueue.model.TaskPage;
+import com.taskqueue.service.TaskNearCache;
+import com.taskqueue.service.TaskService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.RedisServerCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.taskqueue.service.TaskServiceSupport.newTaskService;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs TaskService against the embedded-redis test dependency, so the Lua scripts execute
+ * on a real server and regressions back to per-task round trips show up in command counts.
+ */
+class TaskServiceRedisTest extends EmbeddedRedisSupport {
+
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+    private TaskService taskService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        kafkaTemplate = mock(KafkaTemplate.class);
+        taskService = newTaskService(kafkaTemplate, redisTemplate, objectMapper,
+                FormatDetectingTaskCodec.forFormat(FormatDetectingTaskCodec.BINARY, objectMapper));
+    }
+
+    @Test
+    void testPageCostsTwoRoundTrips() {
+        for (int i = 0; i < 250; i++) {
+            taskService.submitTask("EMAIL_SEND", Map.of("recipient", "user" + i + "@example.com"), Task.Priority.NORMAL);
+        }
+
+        long before = commandsProcessed();
+        List<Task> page = taskService.getAllTasks(0, 100);
+        long commands = commandsProcessed() - before - 1; // minus the INFO that took the reading
+
+        assertEquals(100, page.size());
+        assertEquals(2, commands, "ZREVRANGE + one read-tasks EVAL expected for one page");
+    }
+
+    @Test
+    void testPageIsNewestFirstAndPrunesExpiredIds() {
+        // Ordered by createdAt, not by submission
+        Task third  = createdMinutesAgo(1);
+        Task first  = createdMinutesAgo(3);
+        Task second = createdMinutesAgo(2);
+        when(kafkaTemplate.send(anyString(), anyString(), any(byte[].class))).thenReturn(acked());
+        taskService.submitTasks(List.of(third, first, second));
+        redisTemplate.delete("task:" + second.getId());
+
+        List<Task> page = taskService.getAllTasks(0, 10);
+
+        assertEquals(2, page.size());
+        assertEquals(third.getId(), page.get(0).getId());
+        assertEquals(first.getId(), page.get(1).getId());
+        assertNull(redisTemplate.opsForZSet().score("tasks:index", second.getId()));
+    }
+
+    @Test
+    void testLargePageParsedInParallelKeepsOrder() {
+        for (int i = 0; i < 300; i++) {
+            taskService.submitTask("GENERIC", Map.of("n", i), Task.Priority.NORMAL);
+        }
+
+        List<Task> page = taskService.getAllTasks(0, 300);
+
+        // Newest first; tasks created in the same millisecond are ordered by id
+        assertEquals(new ArrayList<>(redisTemplate.opsForZSet().reverseRange("tasks:index", 0, -1)),
+                page.stream().map(Task::getId).collect(Collectors.toList()));
+        for (int i = 1; i < page.size(); i++) {
+            assertFalse(page.get(i).getCreatedAt().truncatedTo(ChronoUnit.MILLIS)
+                    .isAfter(page.get(i - 1).getCreatedAt().truncatedTo(ChronoUnit.MILLIS)));
+        }
+        assertEquals(300, page.stream().map(task -> task.getPayload().get("n")).distinct().count());
+    }
+
+    @Test
+    void testStatisticsFollowStatusTransitions() {
+        Task done      = taskService.submitTask("GENERIC", Map.of(), Task.Priority.NORMAL);
+        Task cancelled = taskService.submitTask("GENERIC", Map.of(), Task.Priority.NORMAL);
+        Task deleted   = taskService.submitTask("GENERIC", Map.of(), Task.Priority.NORMAL);
+        taskService.submitTask("GENERIC", Map.of(), Task.Priority.NORMAL);
+
+        done.setStatus(Task.TaskStatus.PROCESSING);
+        taskService.updateTask(done);
+        done.setStatus(Task.TaskStatus.COMPLETED);
+        done.setExecutionTimeMs(300);
+        taskService.updateTask(done);
+        assertTrue(taskService.cancelTask(cancelled.getId()));
+        assertTrue(taskService.retryTask(cancelled.getId()));
+        assertTrue(taskService.cancelTask(cancelled.getId()));
+        assertTrue(taskService.deleteTask(deleted.getId()));
+        assertFalse(taskService.deleteTask(deleted.getId()));
+
+        Map<String, Object> stats = taskService.getTaskStatistics();
+        assertEquals(3L, stats.get("total"));
+        assertEquals(1L, stats.get("completed"));
+        assertEquals(1L, stats.get("cancelled"));
+        assertEquals(1L, stats.get("pending"));
+        assertEquals(0L, stats.get("running"));
+        assertEquals(300.0, stats.get("avgExecutionTimeMs"));
+    }
+
+    @Test
+    void testReconcileRebuildsDriftedCounters() {
+        Task expired = taskService.submitTask("GENERIC", Map.of(), Task.Priority.NORMAL);
+        taskService.submitTask("GENERIC", Map.of(), Task.Priority.NORMAL);
+        redisTemplate.delete("task:" + expired.getId()); // simulates TTL expiry
+        redisTemplate.opsForHash().put("tasks:stats", "FAILED", "7");
+
+        taskService.reconcileStatistics();
+
+        Map<String, Object> stats = taskService.getTaskStatistics();
+        assertEquals(1L, stats.get("total"));
+        assertEquals(1L, stats.get("pending"));
+        assertEquals(0L, stats.get("failed"));
+    }
+
+    @Test
+    void testStatusPagesWalkIndexWithoutGapsOrRepeats() {
+        Set<String> failedIds = new HashSet<>();
+        for (int i = 0; i < 23; i++) {
+            Task task = taskService.submitTask("GENERIC", Map.of("n", i), Task.Priority.NORMAL);
+            if (i % 2 == 0) {
+                task.setStatus(Task.TaskStatus.FAILED);
+                task.setCreatedAt(LocalDateTime.of(2026, 1, 1, 0, 0)); // all tie on score
+                taskService.updateTask(task);
+                failedIds.add(task.getId());
+            }
+        }
+
+        Set<String> seen = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            TaskPage page = taskService.getTasksByStatus(Task.TaskStatus.FAILED, cursor, 5);
+            page.getTasks().forEach(task -> assertTrue(seen.add(task.getId()), "repeated " + task.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(failedIds, seen);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void testStatusPagePrunesExpiredTasks() {
+        Task live    = taskService.submitTask("GENERIC", Map.of(), Task.Priority.NORMAL);
+        Task expired = taskService.submitTask("GENERIC", Map.of(), Task.Priority.NORMAL);
+        redisTemplate.delete("task:" + expired.getId());
+
+        TaskPage page = taskService.getTasksByStatus(Task.TaskStatus.PENDING, null, 10);
+
+        assertEquals(List.of(live.getId()), page.getTasks().stream().map(Task::getId).collect(Collectors.toList()));
+        assertNull(page.getNextCursor());
+        assertEquals(1L, redisTemplate.opsForZSet().zCard("tasks:status:PENDING"));
+    }
+
+    @Test
+    void testBatchSubmitPipelinesWritesAndRelaysFailedSendsFromTheOutbox() {
+        SettableListenableFuture<SendResult<String, byte[]>> failed = new SettableListenableFuture<>();
+        failed.setException(new IllegalStateException("broker down"));
+        when(kafkaTemplate.send(anyString(), anyString(), any(byte[].class))).thenReturn(acked());
+        when(kafkaTemplate.send(eq("task-queue-urgent"), anyString(), any(byte[].class))).thenReturn(failed).thenReturn(acked());
+
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            tasks.add(taskService.newTask("EMAIL_SEND", Map.of("n", i), i == 7 ? Task.Priority.URGENT : Task.Priority.NORMAL));
+        }
+
+        List<BatchSubmissionResult> results = taskService.submitTasks(tasks);
+
+        assertEquals(200, results.size());
+        assertEquals(tasks.get(7).getId(), results.get(7).getTaskId());
+        assertTrue(results.get(7).isPending());
+        assertEquals(199, results.stream().filter(r -> r.getError() == null && !r.isPending()).count());
+        assertEquals(200L, redisTemplate.opsForZSet().zCard("tasks:index"));
+        assertEquals(200L, taskService.getTaskStatistics().get("pending"));
+        verify(kafkaTemplate, times(199)).send(eq("task-queue-normal"), anyString(), any(byte[].class));
+
+        // Acked sends are released; the failed one stays with its sender until the claim runs out
+        assertEquals(0, taskService.relayOutbox(500));
+        assertEquals(1, taskService.outboxSize());
+        redisTemplate.opsForZSet().add("tasks:outbox", tasks.get(7).getId(), 0);
+
+        assertEquals(1, taskService.relayOutbox(500));
+        verify(kafkaTemplate, times(2)).send(eq("task-queue-urgent"), eq(tasks.get(7).getId()), any(byte[].class));
+        assertEquals(0, taskService.outboxSize());
+    }
+
+    @Test
+    void testBrokerAckSubmitThrowsPendingButKeepsTaskQueued() {
+        SettableListenableFuture<SendResult<String, byte[]>> failed = new SettableListenableFuture<>();
+        failed.setException(new IllegalStateException("broker down"));
+        when(kafkaTemplate.send(anyString(), anyString(), any(byte[].class))).thenReturn(failed);
+        Task task = taskService.newTask("EMAIL_SEND", Map.of(), Task.Priority.HIGH);
+
+        TaskService.EnqueuePendingException pending = assertThrows(TaskService.EnqueuePendingException.class,
+                () -> taskService.submitTask(task, null, AckMode.BROKER));
+
+        assertEquals(task.getId(), pending.getTask().getId());
+        assertEquals(Task.TaskStatus.PENDING, taskService.getTask(task.getId()).getStatus());
+        assertEquals(1, taskService.outboxSize());
+
+        // Cancelled before the relay got to it: dropped, not published
+        assertTrue(taskService.cancelTask(task.getId()));
+        redisTemplate.opsForZSet().add("tasks:outbox", task.getId(), 0);
+        assertEquals(1, taskService.relayOutbox(500));
+        assertEquals(0, taskService.outboxSize());
+        verify(kafkaTemplate, times(1)).send(anyString(), anyString(), any(byte[].class));
+    }
+
+    @Test
+    void testTransitionWritesOnlyChangedFieldsAndReadsProject() {
+        Task task = taskService.submitTask("DATA_EXPORT", Map.of("format", "CSV"), Task.Priority.NORMAL);
+
+        task.setPayload(Map.of("format", "not written"));
+        task.setStatus(Task.TaskStatus.PROCESSING);
+        task.setWorkerId("worker-1");
+        taskService.updateTask(task, TaskField.STATUS, TaskField.WORKER_ID);
+
+        Task stored = taskService.getTask(task.getId());
+        assertEquals(Task.TaskStatus.PROCESSING, stored.getStatus());
+        assertEquals("worker-1", stored.getWorkerId());
+        assertEquals(Map.of("format", "CSV"), stored.getPayload());
+        assertTrue(redisTemplate.getExpire("task:" + task.getId()) > 0);
+        assertEquals(1L, taskService.getTaskStatistics().get("running"));
+
+        Task listed = taskService.getAllTasks(0, 10, EnumSet.of(TaskField.STATUS, TaskField.TYPE)).get(0);
+        assertEquals(task.getId(), listed.getId());
+        assertEquals("DATA_EXPORT", listed.getType());
+        assertNull(listed.getPayload());
+    }
+
+    @Test
+    void testLegacyStringValueMigratesOnNextWrite() throws Exception {
+        // A value and counters as the whole-task string layout left them
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        Task task = taskService.newTask("GENERIC", Map.of("n", 1), Task.Priority.NORMAL);
+        task.setStatus(Task.TaskStatus.COMPLETED);
+        task.setExecutionTimeMs(250);
+        byte[] legacy = FormatDetectingTaskCodec.forFormat(FormatDetectingTaskCodec.BINARY, objectMapper).encode(task);
+        redisTemplate.execute((RedisCallback<Object>) connection ->
+                connection.stringCommands().set(("task:" + task.getId()).getBytes(), legacy));
+        redisTemplate.opsForHash().putAll("tasks:stats", Map.of("total", "1", "COMPLETED", "1", "completedExecutionTimeMs", "250"));
+
+        assertEquals(Task.TaskStatus.COMPLETED, taskService.getTask(task.getId()).getStatus());
+
+        // A partial write cannot patch a string value — it is merged onto the stored task and written in full
+        Task update = new Task();
+        update.setId(task.getId());
+        update.setStatus(Task.TaskStatus.FAILED);
+        update.setError("boom");
+        taskService.updateTask(update, TaskField.STATUS, TaskField.ERROR);
+
+        assertEquals("hash", redisTemplate.type("task:" + task.getId()).code());
+        Task migrated = taskService.getTask(task.getId());
+        assertEquals(Task.TaskStatus.FAILED, migrated.getStatus());
+        assertEquals("boom", migrated.getError());
+        assertEquals(Map.of("n", 1), migrated.getPayload());
+        assertNotNull(redisTemplate.opsForZSet().score("tasks:index", task.getId()));
+
+        Map<String, Object> stats = taskService.getTaskStatistics();
+        assertEquals(1L, stats.get("total"));
+        assertEquals(0L, stats.get("completed"));
+        assertEquals(1L, stats.get("failed"));
+        assertEquals("0", redisTemplate.opsForHash().get("tasks:stats", "completedExecutionTimeMs"));
+        assertEquals(List.of(task.getId()), taskService.getTasksByStatus(Task.TaskStatus.FAILED, null, 10)
+                .getTasks().stream().map(Task::getId).collect(Collectors.toList()));
+        assertTrue(taskService.deleteTask(task.getId()));
+        assertEquals(0L, taskService.getTaskStatistics().get("failed"));
+    }
+
+    @Test
+    void testCompactionDropsOnlyExpiredIdsOlderThanTheTtl() {
+        // Created two days ago: one key has expired since, the other was kept alive by later writes
+        List<Task> old = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Task task = taskService.newTask("GENERIC", Map.of("n", i), Task.Priority.NORMAL);
+            task.setCreatedAt(LocalDateTime.now().minusDays(2));
+            old.add(task);
+        }
+        when(kafkaTemplate.send(anyString(), anyString(), any(byte[].class))).thenReturn(acked());
+        taskService.submitTasks(old);
+        Task recent = taskService.submitTask("GENERIC", Map.of(), Task.Priority.NORMAL);
+        redisTemplate.delete("task:" + old.get(0).getId());
+        redisTemplate.delete("task:" + recent.getId());
+
+        assertEquals(2, taskService.compactIndexes());
+
+        assertEquals(Set.of(old.get(1).getId(), recent.getId()), redisTemplate.opsForZSet().range("tasks:index", 0, -1));
+        assertEquals(Set.of(old.get(1).getId()), redisTemplate.opsForZSet().range("tasks:status:PENDING", 0, -1)
+                .stream().filter(id -> !id.equals(recent.getId())).collect(Collectors.toSet()));
+        assertTrue(taskService.deleteTask(old.get(1).getId()));
+        assertEquals(List.of(recent.getId()), new ArrayList<>(redisTemplate.opsForZSet().range("tasks:index", 0, -1)));
+    }
+
+    @Test
+    void testCompactionMovesLegacyListIntoIndex() {
+        Task older = taskService.submitTask("GENERIC", Map.of("n", 1), Task.Priority.NORMAL);
+        Task newer = taskService.submitTask("GENERIC", Map.of("n", 2), Task.Priority.NORMAL);
+        // As left by the list-based layout: ids only in tasks:all, one of them long expired
+        redisTemplate.delete("tasks:index");
+        redisTemplate.opsForList().leftPushAll("tasks:all", older.getId(), "expired-id", newer.getId());
+
+        taskService.compactIndexes();
+
+        assertFalse(redisTemplate.hasKey("tasks:all"));
+        assertEquals(List.of(newer.getId(), older.getId()),
+                taskService.getAllTasks(0, 10).stream().map(Task::getId).collect(Collectors.toList()));
+        assertEquals(2L, redisTemplate.opsForZSet().zCard("tasks:index"));
+    }
+
+    @Test
+    void testExportWalksPastTiedScoresAndFilters() throws Exception {
+        LocalDateTime created = LocalDateTime.now().minusHours(1).withNano(0);
+        List<Task> tasks = new ArrayList<>();
+        // More tasks in one millisecond than fit in one export batch
+        for (int i = 0; i < 1500; i++) {
+            Task task = taskService.newTask("GENERIC", Map.of("n", i), Task.Priority.NORMAL);
+            task.setCreatedAt(created);
+            tasks.add(task);
+        }
+        Task other = taskService.newTask("EMAIL_SEND", Map.of(), Task.Priority.NORMAL);
+        other.setCreatedAt(created.plusMinutes(1));
+        Task tooOld = taskService.newTask("GENERIC", Map.of(), Task.Priority.NORMAL);
+        tooOld.setCreatedAt(created.minusMinutes(1));
+        tasks.add(other);
+        tasks.add(tooOld);
+        when(kafkaTemplate.send(anyString(), anyString(), any(byte[].class))).thenReturn(acked());
+        taskService.submitTasks(tasks);
+        taskService.cancelTask(tasks.get(0).getId());
+
+        List<Integer> batchSizes = new ArrayList<>();
+        Set<String> exported = new HashSet<>();
+        taskService.exportTasks(null, "GENERIC", created, null, EnumSet.of(TaskField.STATUS), batch -> {
+            batchSizes.add(batch.size());
+            batch.forEach(task -> assertNull(task.getPayload()));
+            batch.forEach(task -> exported.add(task.getId()));
+        });
+
+        assertEquals(List.of(1000, 500), batchSizes);
+        assertEquals(tasks.subList(0, 1500).stream().map(Task::getId).collect(Collectors.toSet()), exported);
+
+        List<String> cancelled = new ArrayList<>();
+        taskService.exportTasks(Task.TaskStatus.CANCELLED, null, null, created, EnumSet.noneOf(TaskField.class),
+                batch -> batch.forEach(task -> cancelled.add(task.getId())));
+        assertEquals(List.of(tasks.get(0).getId()), cancelled);
+    }
+
+    @Test
+    void testIdempotencyKeyReturnsOriginalTaskWithoutEnqueueing() {
+        when(kafkaTemplate.send(anyString(), anyString(), any(byte[].class))).thenReturn(acked());
+        Task first = taskService.submitTask(taskService.newTask("REPORT_GENERATE", Map.of(), Task.Priority.NORMAL), "alice:k1");
+        Task retry = taskService.submitTask(taskService.newTask("REPORT_GENERATE", Map.of(), Task.Priority.NORMAL), "alice:k1");
+        Task other = taskService.submitTask(taskService.newTask("REPORT_GENERATE", Map.of(), Task.Priority.NORMAL), "bob:k1");
+
+        assertEquals(first.getId(), retry.getId());
+        assertNotEquals(first.getId(), other.getId());
+        verify(kafkaTemplate, times(2)).send(anyString(), anyString(), any(byte[].class));
+        assertEquals(2L, taskService.getTaskStatistics().get("total"));
+        assertTrue(redisTemplate.getExpire("tasks:idempotency:alice:k1") > 0);
+
+        // Batch: a repeat of an earlier key and a key repeated within the batch
+        List<Task> batch = List.of(
+                taskService.newTask("GENERIC", Map.of(), Task.Priority.NORMAL),
+                taskService.newTask("GENERIC", Map.of(), Task.Priority.NORMAL),
+                taskService.newTask("GENERIC", Map.of(), Task.Priority.NORMAL));
+        List<BatchSubmissionResult> results = taskService.submitTasks(batch, Arrays.asList("alice:k1", "alice:k2", "alice:k2"));
+
+        assertTrue(results.get(0).isDuplicate());
+        assertEquals(first.getId(), results.get(0).getTaskId());
+        assertFalse(results.get(1).isDuplicate());
+        assertEquals(batch.get(1).getId(), results.get(1).getTaskId());
+        assertTrue(results.get(2).isDuplicate());
+        assertEquals(batch.get(1).getId(), results.get(2).getTaskId());
+        assertEquals(3L, taskService.getTaskStatistics().get("total"));
+        verify(kafkaTemplate, times(3)).send(anyString(), anyString(), any(byte[].class));
+
+        // The key outlives a deleted task: repeats get nothing rather than a second run
+        taskService.deleteTask(first.getId());
+        assertNull(taskService.submitTask(taskService.newTask("REPORT_GENERATE", Map.of(), Task.Priority.NORMAL), "alice:k1"));
+    }
+
+    @Test
+    void testLargePayloadAndResultAreClaimCheckedAndResolvedOnRead() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        TaskCodec codec = FormatDetectingTaskCodec.forFormat(FormatDetectingTaskCodec.BINARY, objectMapper);
+        TaskService service = new TaskService(kafkaTemplate, redisTemplate, objectMapper, codec, TaskNearCache.disabled(), 1024);
+        String large = "row,".repeat(2000);
+
+        Task task = service.submitTask("DATA_EXPORT", Map.of("csv", large), Task.Priority.NORMAL);
+        String payloadKey = "task:" + task.getId() + ":payload";
+        String resultKey  = "task:" + task.getId() + ":result";
+
+        // Stored once, compressed, on the task's TTL — the Kafka message is only a ticket
+        assertTrue(redisTemplate.getExpire(payloadKey) > 0);
+        Long stored = redisTemplate.execute((RedisCallback<Long>) connection -> connection.stringCommands().strLen(payloadKey.getBytes()));
+        assertTrue(stored < 1024, "compressed size " + stored);
+        ArgumentCaptor<byte[]> message = ArgumentCaptor.forClass(byte[].class);
+        verify(kafkaTemplate).send(anyString(), eq(task.getId()), message.capture());
+        assertNull(codec.decode(message.getValue()).getPayload());
+
+        assertEquals(Map.of("csv", large), service.getTask(task.getId()).getPayload());
+        // Bulk reads fetch it only when the payload is asked for
+        assertEquals(Map.of("csv", large), service.getAllTasks(0, 10).get(0).getPayload());
+        assertNull(service.getAllTasks(0, 10, EnumSet.of(TaskField.STATUS)).get(0).getPayload());
+        List<Task> exported = new ArrayList<>();
+        service.exportTasks(null, null, null, null, EnumSet.of(TaskField.PAYLOAD), exported::addAll);
+        assertEquals(Map.of("csv", large), exported.get(0).getPayload());
+
+        task.setStatus(Task.TaskStatus.COMPLETED);
+        task.setResult(large);
+        service.updateTask(task, TaskField.STATUS, TaskField.RESULT);
+        assertEquals(large, service.getTask(task.getId()).getResult());
+        assertTrue(redisTemplate.hasKey(resultKey));
+
+        // A small result replaces the claim-checked one inline
+        task.setResult("done");
+        service.updateTask(task, TaskField.RESULT);
+        assertEquals("done", service.getTask(task.getId()).getResult());
+        assertFalse(redisTemplate.hasKey(resultKey));
+
+        service.deleteTask(task.getId());
+        assertFalse(redisTemplate.hasKey(payloadKey));
+    }
+
+    private Task createdMinutesAgo(int minutes) {
+        Task task = taskService.newTask("GENERIC", Map.of("minutes", minutes), Task.Priority.LOW);
+        task.setCreatedAt(LocalDateTime.now().minusMinutes(minutes));
+        return task;
+    }
+
+    private static SettableListenableFuture<SendResult<String, byte[]>> acked() {
+        SettableListenableFuture<SendResult<String, byte[]>> future = new SettableListenableFuture<>();
+        future.set(null);
+        return future;
+    }
+
+    private long commandsProcessed() {
+        // Commands run by scripts count too — leave out the ones only read-tasks.lua issues
+        Properties stats = redisTemplate.execute((RedisCallback<Properties>) connection ->
+                ((RedisServerCommands) connection.serverCommands()).info("commandstats"));
+        assertNotNull(stats);
+        long total = 0;
+        for (String name : stats.stringPropertyNames()) {
+            if (name.equals("cmdstat_type") || name.equals("cmdstat_hmget") || name.equals("cmdstat_get")) continue;
+            String value = stats.getProperty(name);
+            total += Long.parseLong(value.substring(value.indexOf("calls=") + 6, value.indexOf(',')));
+        }
+        return total;
+    }
+}
@@ -2,20 +2,28 @@ package com.taskqueue;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.taskqueue.codec.FormatDetectingTaskCodec;
+import com.taskqueue.codec.TaskCodec;
+import com.taskqueue.model.TaskField;
 import com.taskqueue.service.TaskService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
-import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.kafka.core.KafkaTemplate;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import static com.taskqueue.service.TaskServiceSupport.newTaskService;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -24,7 +32,7 @@ import static org.mockito.Mockito.*;
 class TaskServiceTest {
 
     @Mock
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
     
     @Mock
     private RedisTemplate<String, String> redisTemplate;
@@ -32,20 +40,18 @@ class TaskServiceTest {
     @Mock
     private ValueOperations<String, String> valueOperations;
     
-    @Mock
-    private ListOperations<String, String> listOperations;
-    
     private TaskService taskService;
     private ObjectMapper objectMapper;
+    private TaskCodec taskCodec;
 
     @BeforeEach
     void setUp() {
         objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule()); // Register JavaTimeModule for LocalDateTime
-        taskService = new TaskService(kafkaTemplate, redisTemplate, objectMapper);
+        taskCodec = FormatDetectingTaskCodec.forFormat("json", objectMapper);
+        taskService = newTaskService(kafkaTemplate, redisTemplate, objectMapper, taskCodec);
         
         lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        lenient().when(redisTemplate.opsForList()).thenReturn(listOperations);
     }
 
     @Test
@@ -67,12 +73,19 @@ class TaskServiceTest {
         assertNotNull(task.getId());
         assertNotNull(task.getCreatedAt());
         
-        // Verify Redis operations
-        verify(valueOperations).set(anyString(), anyString(), eq(24L), eq(java.util.concurrent.TimeUnit.HOURS));
-        verify(listOperations).leftPush(eq("tasks:all"), eq(task.getId()));
+        // Verify Redis operations — hash fields, statistics, the task index and the outbox are written by one script
+        ArgumentCaptor<Object> args = ArgumentCaptor.forClass(Object.class);
+        verify(redisTemplate).execute(anyScript(), anySerializer(), anySerializer(),
+                eq(List.of("task:" + task.getId(), "tasks:stats", "tasks:index", "tasks:outbox")), args.capture());
+        List<Object> saved = args.getAllValues();
+        assertEquals(List.of("86400", "tasks:status:"), saved.subList(0, 2));
+        assertEquals(List.of(task.getId(), "full"), saved.subList(3, 5));
+        int status = saved.indexOf("status");
+        assertArrayEquals("PENDING".getBytes(), (byte[]) saved.get(status + 1));
+        verify(redisTemplate, never()).opsForList();
         
         // Verify Kafka operations
-        verify(kafkaTemplate).send(eq("task-queue-normal"), eq(task.getId()), anyString());
+        verify(kafkaTemplate).send(eq("task-queue-normal"), eq(task.getId()), any(byte[].class));
     }
 
     @Test
@@ -84,29 +97,34 @@ class TaskServiceTest {
         expectedTask.setType("test");
         expectedTask.setStatus(Task.TaskStatus.PENDING);
         
-        try {
-            String taskJson = objectMapper.writeValueAsString(expectedTask);
-            when(valueOperations.get("task:" + taskId)).thenReturn(taskJson);
-            
-            // When
-            Task actualTask = taskService.getTask(taskId);
-            
-            // Then
-            assertNotNull(actualTask);
-            assertEquals(taskId, actualTask.getId());
-            assertEquals("test", actualTask.getType());
-            assertEquals(Task.TaskStatus.PENDING, actualTask.getStatus());
-            
-        } catch (Exception e) {
-            fail("Test failed due to JSON processing error: " + e.getMessage());
+        // One row per key from read-tasks.lua: 'h' then every field in TaskField order
+        List<Object> row = new ArrayList<>(List.of("h".getBytes()));
+        for (TaskField field : TaskField.values()) {
+            row.add(field == TaskField.ID     ? taskId.getBytes()
+                  : field == TaskField.TYPE   ? expectedTask.getType().getBytes()
+                  : field == TaskField.STATUS ? expectedTask.getStatus().name().getBytes()
+                  : null);
         }
+        doReturn(List.of(row)).when(redisTemplate).execute(anyScript(), anySerializer(),
+                anySerializer(), eq(List.of("task:" + taskId)), any());
+
+        // When
+        Task actualTask = taskService.getTask(taskId);
+
+        // Then
+        assertNotNull(actualTask);
+        assertEquals(taskId, actualTask.getId());
+        assertEquals("test", actualTask.getType());
+        assertEquals(Task.TaskStatus.PENDING, actualTask.getStatus());
+        assertNull(actualTask.getPayload());
     }
 
     @Test
     void testGetTaskNotFound() {
         // Given
         String taskId = "non-existent-task";
-        when(valueOperations.get("task:" + taskId)).thenReturn(null);
+        doReturn(List.of(List.of())).when(redisTemplate).execute(anyScript(), anySerializer(),
+                anySerializer(), eq(List.of("task:" + taskId)), any());
         
         // When
         Task task = taskService.getTask(taskId);
@@ -114,4 +132,12 @@ class TaskServiceTest {
         // Then
         assertNull(task);
     }
-} 
\ No newline at end of file
+
+    private static <T> RedisScript<T> anyScript() {
+        return any();
+    }
+
+    private static <T> RedisSerializer<T> anySerializer() {
+        return any();
+    }
+}
@@ -0,0 +1,143 @@
+package com.taskqueue;
+
+import com.taskqueue.model.TaskField;
+import com.taskqueue.model.TaskUpdateBatch;
+import com.taskqueue.service.TaskUpdatePublisher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TaskUpdatePublisherTest {
+
+    private SimpMessagingTemplate messagingTemplate;
+    private TaskUpdatePublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        publisher = new TaskUpdatePublisher(messagingTemplate, 16 * 1024);
+    }
+
+    @Test
+    void testUpdatesAreConflatedIntoOneDeltaPerTask() {
+        subscribe("s1", "sub-0", TaskUpdatePublisher.ALL_DESTINATION);
+        Task task = task("t1", "EMAIL_SEND");
+
+        task.setStatus(Task.TaskStatus.PROCESSING);
+        task.setWorkerId("worker-1");
+        publisher.publish(task, EnumSet.of(TaskField.STATUS, TaskField.WORKER_ID));
+        task.setStatus(Task.TaskStatus.COMPLETED);
+        task.setResult("sent");
+        publisher.publish(task, EnumSet.of(TaskField.STATUS, TaskField.RESULT));
+        publisher.flush();
+
+        TaskUpdateBatch batch = sent(TaskUpdatePublisher.ALL_DESTINATION).get(0);
+        assertEquals(1, batch.getSeq());
+        assertEquals(List.of(Map.of("id", "t1", "type", "EMAIL_SEND", "status", Task.TaskStatus.COMPLETED,
+                "workerId", "worker-1", "result", "sent")), batch.getUpdates());
+        assertEquals(1, publisher.currentSeq(TaskUpdatePublisher.ALL_DESTINATION));
+    }
+
+    @Test
+    void testPayloadAndLargeResultsAreLeftForTheClientToFetch() {
+        publisher = new TaskUpdatePublisher(messagingTemplate, 16);
+        subscribe("s1", "sub-0", TaskUpdatePublisher.ALL_DESTINATION);
+        Task task = task("t1", "DATA_EXPORT");
+        task.setPayload(Map.of("rows", 100000));
+        task.setResult("a result well over sixteen bytes");
+
+        publisher.publish(task, EnumSet.of(TaskField.STATUS, TaskField.PAYLOAD, TaskField.RESULT));
+        publisher.flush();
+
+        Map<String, Object> delta = sent(TaskUpdatePublisher.ALL_DESTINATION).get(0).getUpdates().get(0);
+        assertFalse(delta.containsKey("payload"));
+        assertFalse(delta.containsKey("result"));
+        assertEquals(Set.of("payload", "result"), delta.get(TaskUpdatePublisher.OFFLOADED));
+    }
+
+    @Test
+    void testOnlySubscribedDestinationsReceiveBatches() {
+        subscribe("s1", "sub-0", TaskUpdatePublisher.TYPE_PREFIX + "EMAIL_SEND");
+        subscribe("s2", "sub-0", TaskUpdatePublisher.TASK_PREFIX + "t2");
+
+        publisher.publish(task("t1", "EMAIL_SEND"), EnumSet.of(TaskField.STATUS));
+        publisher.publish(task("t2", "REPORT_GENERATION"), EnumSet.of(TaskField.STATUS));
+        publisher.flush();
+
+        verify(messagingTemplate, never()).convertAndSend(eq(TaskUpdatePublisher.ALL_DESTINATION), any(Object.class));
+        verify(messagingTemplate, never()).convertAndSend(eq(TaskUpdatePublisher.TASK_PREFIX + "t1"), any(Object.class));
+        assertEquals("t1", sent(TaskUpdatePublisher.TYPE_PREFIX + "EMAIL_SEND").get(0).getUpdates().get(0).get("id"));
+        assertEquals("t2", sent(TaskUpdatePublisher.TASK_PREFIX + "t2").get(0).getUpdates().get(0).get("id"));
+
+        // Second window: the per-type destination's seq moves on independently
+        publisher.publish(task("t3", "EMAIL_SEND"), EnumSet.of(TaskField.STATUS));
+        publisher.flush();
+        assertEquals(List.of(1L, 2L), sent(TaskUpdatePublisher.TYPE_PREFIX + "EMAIL_SEND").stream()
+                .map(TaskUpdateBatch::getSeq).collect(Collectors.toList()));
+        assertEquals(1, publisher.currentSeq(TaskUpdatePublisher.TASK_PREFIX + "t2"));
+    }
+
+    @Test
+    void testUnsubscribeAndDisconnectStopDelivery() {
+        subscribe("s1", "sub-0", TaskUpdatePublisher.ALL_DESTINATION);
+        subscribe("s2", "sub-0", TaskUpdatePublisher.ALL_DESTINATION);
+        subscribe("s2", "sub-1", TaskUpdatePublisher.TASK_PREFIX + "t1");
+
+        publisher.onUnsubscribe(new SessionUnsubscribeEvent(this, stomp(StompCommand.UNSUBSCRIBE, "s1", "sub-0", null)));
+        publisher.publish(task("t1", "GENERIC"), EnumSet.of(TaskField.STATUS));
+        publisher.flush();
+        assertEquals(1, sent(TaskUpdatePublisher.ALL_DESTINATION).size());
+        assertEquals(1, sent(TaskUpdatePublisher.TASK_PREFIX + "t1").size());
+
+        publisher.onDisconnect(new SessionDisconnectEvent(this, stomp(StompCommand.DISCONNECT, "s2", null, null),
+                "s2", CloseStatus.NORMAL));
+        publisher.publish(task("t1", "GENERIC"), EnumSet.of(TaskField.STATUS));
+        publisher.flush();
+        assertEquals(1, sent(TaskUpdatePublisher.ALL_DESTINATION).size());
+        assertEquals(0, publisher.currentSeq(TaskUpdatePublisher.TASK_PREFIX + "t1"));
+    }
+
+    private void subscribe(String sessionId, String subscriptionId, String destination) {
+        publisher.onSubscribe(new SessionSubscribeEvent(this, stomp(StompCommand.SUBSCRIBE, sessionId, subscriptionId, destination)));
+    }
+
+    private static Message<byte[]> stomp(StompCommand command, String sessionId, String subscriptionId, String destination) {
+        StompHeaderAccessor headers = StompHeaderAccessor.create(command);
+        headers.setSessionId(sessionId);
+        headers.setSubscriptionId(subscriptionId);
+        headers.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+    }
+
+    private List<TaskUpdateBatch> sent(String destination) {
+        ArgumentCaptor<TaskUpdateBatch> batches = ArgumentCaptor.forClass(TaskUpdateBatch.class);
+        verify(messagingTemplate, atLeastOnce()).convertAndSend(eq(destination), batches.capture());
+        return batches.getAllValues();
+    }
+
+    private static Task task(String id, String type) {
+        Task task = new Task();
+        task.setId(id);
+        task.setType(type);
+        task.setStatus(Task.TaskStatus.PENDING);
+        return task;
+    }
+}
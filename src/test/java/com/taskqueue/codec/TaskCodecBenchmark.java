@@ -0,0 +1,79 @@
+package com.taskqueue.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.taskqueue.Task;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode cost per task for each TaskCodec format. Not run by surefire — run main()
+ * on the test classpath (see README), which prints bytes per task before the JMH run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskCodecBenchmark {
+
+    @Param({"json", "binary"})
+    private String format;
+
+    /** Payload entries beyond the task's own fields — small is a typical EMAIL_SEND. */
+    @Param({"2", "50"})
+    private int payloadFields;
+
+    private TaskCodec codec;
+    private Task task;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws Exception {
+        codec   = FormatDetectingTaskCodec.forFormat(format, objectMapper());
+        task    = task(payloadFields);
+        encoded = codec.encode(task);
+    }
+
+    @Benchmark
+    public byte[] encode() throws Exception {
+        return codec.encode(task);
+    }
+
+    @Benchmark
+    public Task decode() throws Exception {
+        return codec.decode(encoded);
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (int fields : new int[] {2, 50}) {
+            for (String format : new String[] {FormatDetectingTaskCodec.JSON, FormatDetectingTaskCodec.BINARY}) {
+                int bytes = FormatDetectingTaskCodec.forFormat(format, objectMapper()).encode(task(fields)).length;
+                System.out.printf("bytes/task  format=%-6s payloadFields=%-3d %5d%n", format, fields, bytes);
+            }
+        }
+        new Runner(new OptionsBuilder().include(TaskCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private static ObjectMapper objectMapper() {
+        return new ObjectMapper().registerModule(new JavaTimeModule());
+    }
+
+    static Task task(int payloadFields) {
+        Task task = TaskCodecTest.sampleTask();
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("recipient", "user@example.com");
+        payload.put("subject", "Your export is ready");
+        for (int i = 2; i < payloadFields; i++) {
+            payload.put("field" + i, i % 2 == 0 ? (Object) ("value-" + i) : (Object) (i * 1000));
+        }
+        task.setPayload(payload);
+        return task;
+    }
+}
@@ -0,0 +1,93 @@
+package com.taskqueue.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.taskqueue.Task;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final TaskCodec json   = FormatDetectingTaskCodec.forFormat(FormatDetectingTaskCodec.JSON, objectMapper);
+    private final TaskCodec binary = FormatDetectingTaskCodec.forFormat(FormatDetectingTaskCodec.BINARY, objectMapper);
+
+    @Test
+    void testBinaryRoundTripKeepsEveryField() throws Exception {
+        Task task = sampleTask();
+
+        Task decoded = binary.decode(binary.encode(task));
+
+        assertEquals(task, decoded);
+        assertEquals(Integer.class, decoded.getPayload().get("recordCount").getClass());
+        assertEquals(Long.class, decoded.getPayload().get("bytes").getClass());
+    }
+
+    @Test
+    void testEitherCodecReadsTheOtherFormat() throws Exception {
+        Task task = sampleTask();
+        task.setCreatedAt(task.getCreatedAt().withNano(0)); // JSON is formatted to the second
+        task.setStartedAt(null);
+
+        assertEquals(task, binary.decode(json.encode(task)), "legacy JSON readable after switching to binary");
+        assertEquals(task, json.decode(binary.encode(task)), "binary readable after switching back");
+    }
+
+    @Test
+    void testBinaryHeaderIsReadableInPlace() throws Exception {
+        Task task = sampleTask();
+        byte[] bytes = binary.encode(task);
+
+        // The layout save-task.lua relies on: version, status length + name, int64 executionTimeMs
+        assertEquals(BinaryTaskCodec.VERSION_1, bytes[0]);
+        assertEquals("COMPLETED", new String(Arrays.copyOfRange(bytes, 2, 2 + bytes[1])));
+        long time = 0;
+        for (int i = 0; i < 8; i++) {
+            time = (time << 8) | (bytes[2 + bytes[1] + i] & 0xFF);
+        }
+        assertEquals(task.getExecutionTimeMs(), time);
+        assertTrue(bytes.length < json.encode(task).length, "binary should be smaller than JSON");
+    }
+
+    @Test
+    void testUnknownVersionIsRejected() {
+        assertThrows(java.io.IOException.class, () -> new BinaryTaskCodec().decode(new byte[] {0x7F, 0}));
+    }
+
+    static Task sampleTask() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("format", "CSV");
+        payload.put("recordCount", 5000);
+        payload.put("bytes", 12_000_000_000L);
+        payload.put("ratio", 0.25);
+        payload.put("gzip", true);
+        payload.put("note", null);
+        payload.put("columns", List.of("id", "name", "ünïcode"));
+        payload.put("filter", Map.of("since", "2026-01-01"));
+        payload.put("huge", new BigInteger("123456789012345678901234567890"));
+
+        Task task = new Task();
+        task.setId("3f1c2a9e-8b7d-4c6e-9f0a-1b2c3d4e5f60");
+        task.setType("DATA_EXPORT");
+        task.setStatus(Task.TaskStatus.COMPLETED);
+        task.setWorkerId("worker-1a2b3c4d");
+        task.setPayload(payload);
+        task.setResult("Exported 5000 records");
+        task.setRetryCount(1);
+        task.setMaxRetries(3);
+        task.setPriority(Task.Priority.HIGH);
+        task.setCreatedAt(LocalDateTime.of(2026, 3, 1, 12, 30, 15, 123_456_789));
+        task.setStartedAt(LocalDateTime.of(2026, 3, 1, 12, 30, 16));
+        task.setCompletedAt(LocalDateTime.of(2026, 3, 1, 12, 30, 19));
+        task.setExecutionTimeMs(3012);
+        return task;
+    }
+}
@@ -0,0 +1,60 @@
+package com.taskqueue.codec;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.taskqueue.Task;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Task lists through the ObjectMapper the REST API and WebSocket pushes use — built the way
+ * Spring Boot builds it from application.properties. One op is a whole list of tasks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskJsonBenchmark {
+
+    private static final TypeReference<List<Task>> TASK_LIST = new TypeReference<List<Task>>() {};
+
+    @Param({"2", "50"})
+    private int payloadFields;
+
+    @Param({"1", "100"})
+    private int tasks;
+
+    private ObjectMapper objectMapper;
+    private List<Task> list;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws Exception {
+        // spring.jackson.serialization.write-dates-as-timestamps=false
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        list = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            list.add(TaskCodecBenchmark.task(payloadFields));
+        }
+        json = objectMapper.writeValueAsBytes(list);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(list);
+    }
+
+    @Benchmark
+    public List<Task> deserialize() throws Exception {
+        return objectMapper.readValue(json, TASK_LIST);
+    }
+}
@@ -0,0 +1,70 @@
+package com.taskqueue.config;
+
+import com.taskqueue.service.JwtService;
+import com.taskqueue.service.JwtTokenVerifier;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.FilterChain;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of JwtAuthenticationFilter with a valid bearer token. Requests cycle
+ * through `tokens` distinct tokens against a verifier cache of 10000: 1 is the steady state
+ * of a client that keeps its token (cache hit), 100000 makes every request a parse and
+ * HMAC check (cache miss).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtAuthenticationFilterBenchmark {
+
+    private static final FilterChain NO_OP = (request, response) -> { };
+
+    @Param({"1", "100000"})
+    private int tokens;
+
+    private JwtAuthenticationFilter filter;
+    private String[] headers;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        JwtService jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secretKey", "benchmark-secret-that-is-at-least-32-characters");
+        ReflectionTestUtils.setField(jwtService, "expirationMs", TimeUnit.HOURS.toMillis(1));
+        JwtTokenVerifier verifier = new JwtTokenVerifier(jwtService, username -> {
+            throw new UsernameNotFoundException(username); // every token carries a role claim
+        }, 10_000);
+        filter = new JwtAuthenticationFilter();
+        ReflectionTestUtils.setField(filter, "tokenVerifier", verifier);
+
+        headers = new String[tokens];
+        for (int i = 0; i < tokens; i++) {
+            headers[i] = "Bearer " + jwtService.generateToken("user" + i, "USER");
+        }
+        request  = new MockHttpServletRequest("GET", "/tasks");
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public Object filter() throws Exception {
+        request.removeHeader("Authorization");
+        request.addHeader("Authorization", headers[next]);
+        next = (next + 1) % tokens;
+        // OncePerRequestFilter marks the request as filtered — clear it, and the previous login
+        request.clearAttributes();
+        SecurityContextHolder.clearContext();
+        filter.doFilter(request, response, NO_OP);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
@@ -0,0 +1,76 @@
+package com.taskqueue.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskqueue.Task;
+import com.taskqueue.model.AckMode;
+import com.taskqueue.model.BatchSubmissionResult;
+import com.taskqueue.service.TaskService;
+import com.taskqueue.service.TaskUpdatePublisher;
+import com.taskqueue.worker.TaskRateLimiter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TaskControllerTest {
+
+    @Mock
+    private TaskService taskService;
+
+    @Mock
+    private TaskUpdatePublisher publisher;
+
+    @Mock
+    private TaskRateLimiter rateLimiter;
+
+    private TaskController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new TaskController(taskService, publisher, new ObjectMapper(), rateLimiter);
+        ReflectionTestUtils.setField(controller, "maxBatchSize", 10_000);
+        lenient().when(taskService.newTask(any(), any(), any())).thenAnswer(invocation -> {
+            Task task = new Task();
+            task.setId("task-1");
+            task.setType(invocation.getArgument(0));
+            return task;
+        });
+        lenient().when(taskService.submitTasks(anyList(), anyList(), any()))
+                .thenReturn(List.of(new BatchSubmissionResult(0, "task-1", null)));
+    }
+
+    @Test
+    void testBatchWaitsForBrokerAckUnlessOutboxRequested() {
+        assertEquals(HttpStatus.OK, controller.submitTasks(List.of(request()), null, null).getStatusCode());
+        verify(taskService).submitTasks(anyList(), anyList(), eq(AckMode.BROKER));
+
+        controller.submitTasks(List.of(request()), "outbox", null);
+        verify(taskService).submitTasks(anyList(), anyList(), eq(AckMode.OUTBOX));
+    }
+
+    @Test
+    void testSingleSubmitUsesConfiguredDefault() {
+        when(taskService.submitTask(any(Task.class), any(), any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        controller.submitTask(request(), null, null, null);
+        verify(taskService).submitTask(any(Task.class), isNull(), eq(AckMode.OUTBOX));
+    }
+
+    private static TaskController.TaskSubmissionRequest request() {
+        TaskController.TaskSubmissionRequest request = new TaskController.TaskSubmissionRequest();
+        request.setType("EMAIL_SEND");
+        request.setPayload(Map.of("recipient", "a@example.com"));
+        return request;
+    }
+}
@@ -0,0 +1,31 @@
+package com.taskqueue.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskqueue.codec.TaskCodec;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+
+/**
+ * TaskService as the tests build it: through its one constructor, with the default
+ * claim-check threshold and, unless one is given, no near-cache.
+ */
+public final class TaskServiceSupport {
+
+    private TaskServiceSupport() {}
+
+    public static TaskService newTaskService(KafkaTemplate<String, byte[]> kafkaTemplate,
+                                             RedisTemplate<String, String> redisTemplate,
+                                             ObjectMapper objectMapper,
+                                             TaskCodec taskCodec) {
+        return newTaskService(kafkaTemplate, redisTemplate, objectMapper, taskCodec, TaskNearCache.disabled());
+    }
+
+    public static TaskService newTaskService(KafkaTemplate<String, byte[]> kafkaTemplate,
+                                             RedisTemplate<String, String> redisTemplate,
+                                             ObjectMapper objectMapper,
+                                             TaskCodec taskCodec,
+                                             TaskNearCache nearCache) {
+        return new TaskService(kafkaTemplate, redisTemplate, objectMapper, taskCodec, nearCache,
+                ClaimCheck.DEFAULT_THRESHOLD_BYTES);
+    }
+}
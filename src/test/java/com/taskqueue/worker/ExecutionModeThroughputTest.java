@@ -0,0 +1,91 @@
+package com.taskqueue.worker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.taskqueue.Task;
+import com.taskqueue.TaskQueueApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tasks per second through TaskDispatcher for an I/O-bound processor (a blocking 20ms call),
+ * on the default platform pool vs. virtual-thread execution mode, both built by the
+ * application's own taskExecutor bean method. Both rates are printed and written to
+ * target/execution-mode-report.json.
+ *
+ * Wall-clock bound, so tagged "load" like TaskPipelineLoadTest and left out of the unit test
+ * run; `mvn -P load-test test` runs it.
+ */
+@Tag("load")
+class ExecutionModeThroughputTest {
+
+    private static final int  TASKS       = 2000;
+    private static final long BLOCKING_MS = 20;
+
+    private final TaskQueueApplication application = new TaskQueueApplication();
+
+    @Test
+    void testVirtualThreadsOutrunPlatformPoolForBlockingProcessors() throws Exception {
+        Executor platform = application.taskExecutor("platform", 20);
+        Executor virtual  = application.taskExecutor(TaskQueueApplication.VIRTUAL_EXECUTION, 20);
+        try {
+            double platformRate = tasksPerSecond(platform, 20);
+            double virtualRate  = tasksPerSecond(virtual, 1000);
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("tasks", TASKS);
+            report.put("blockingMs", BLOCKING_MS);
+            report.put("platformPerSec", Math.round(platformRate * 10) / 10.0);
+            report.put("virtualPerSec", Math.round(virtualRate * 10) / 10.0);
+            ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+            objectMapper.writeValue(new File("target/execution-mode-report.json"), report);
+            System.out.println(objectMapper.writeValueAsString(report));
+
+            assertTrue(virtualRate > 5 * platformRate,
+                    "virtual " + virtualRate + " tasks/s vs platform " + platformRate + " tasks/s");
+        } finally {
+            ((ThreadPoolTaskExecutor) platform).shutdown();
+            ((ExecutorService) virtual).shutdown();
+        }
+    }
+
+    private static double tasksPerSecond(Executor executor, int concurrency) throws InterruptedException {
+        TaskDispatcher dispatcher = new TaskDispatcher(executor, mock(KafkaListenerEndpointRegistry.class),
+                concurrency, 30_000, 0, Integer.MAX_VALUE);
+        dispatcher.start();
+        try {
+            CountDownLatch done = new CountDownLatch(TASKS);
+            Task task = new Task();
+            task.setPriority(Task.Priority.NORMAL);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < TASKS; i++) {
+                dispatcher.dispatch(task, () -> {
+                    try {
+                        Thread.sleep(BLOCKING_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    done.countDown();
+                });
+            }
+            assertTrue(done.await(60, TimeUnit.SECONDS));
+            return TASKS / ((System.nanoTime() - start) / 1e9);
+        } finally {
+            dispatcher.stop();
+        }
+    }
+}
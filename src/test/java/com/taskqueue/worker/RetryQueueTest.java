@@ -0,0 +1,135 @@
+package com.taskqueue.worker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.taskqueue.EmbeddedRedisSupport;
+import com.taskqueue.Task;
+import com.taskqueue.codec.FormatDetectingTaskCodec;
+import com.taskqueue.codec.TaskCodec;
+import com.taskqueue.service.TaskService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.taskqueue.service.TaskServiceSupport.newTaskService;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RetryQueueTest extends EmbeddedRedisSupport {
+
+    @Mock
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+    private TaskService taskService;
+    private TaskCodec taskCodec;
+    private SettableListenableFuture<SendResult<String, byte[]>> acked;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        taskCodec = FormatDetectingTaskCodec.forFormat(FormatDetectingTaskCodec.JSON, objectMapper);
+        taskService = newTaskService(kafkaTemplate, redisTemplate, objectMapper, taskCodec);
+        acked = new SettableListenableFuture<>();
+        acked.set(null);
+        // Not every test publishes
+        lenient().when(kafkaTemplate.send(anyString(), anyString(), any(byte[].class))).thenReturn(acked);
+    }
+
+    @Test
+    void testDueRetriesSurviveRestartAndPublishInBatches() {
+        List<Task> retrying = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            retrying.add(retryingTask());
+        }
+        Task notYetDue = retryingTask();
+
+        RetryQueue beforeRestart = newQueue(30_000);
+        retrying.forEach(task -> beforeRestart.schedule(task.getId(), 0));
+        beforeRestart.schedule(notYetDue.getId(), 60_000);
+
+        // A fresh instance (new process) sees everything the old one scheduled
+        RetryQueue afterRestart = newQueue(30_000);
+        afterRestart.publishDue();
+
+        verify(kafkaTemplate, times(1200)).send(eq(RetryQueue.RETRY_TOPIC), anyString(), any(byte[].class));
+        verify(kafkaTemplate, never()).send(eq(RetryQueue.RETRY_TOPIC), eq(notYetDue.getId()), any(byte[].class));
+        assertEquals(1, afterRestart.size());
+    }
+
+    @Test
+    void testUnackedRetryIsRedeliveredAfterVisibilityTimeout() throws Exception {
+        Task task = retryingTask();
+        SettableListenableFuture<SendResult<String, byte[]>> failed = new SettableListenableFuture<>();
+        failed.setException(new IllegalStateException("broker down"));
+        when(kafkaTemplate.send(eq(RetryQueue.RETRY_TOPIC), eq(task.getId()), any(byte[].class))).thenReturn(failed).thenReturn(acked);
+
+        RetryQueue queue = newQueue(50);
+        queue.schedule(task.getId(), 0);
+
+        queue.publishDue();
+        assertEquals(1, queue.size(), "failed publish stays claimed");
+        queue.publishDue();
+        verify(kafkaTemplate, times(1)).send(eq(RetryQueue.RETRY_TOPIC), eq(task.getId()), any(byte[].class));
+
+        Thread.sleep(100);
+        queue.publishDue();
+        verify(kafkaTemplate, times(2)).send(eq(RetryQueue.RETRY_TOPIC), eq(task.getId()), any(byte[].class));
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void testBatchWaitsForBrokerAcksAgainstOneDeadline() {
+        RetryQueue queue = newQueue(30_000);
+        for (int i = 0; i < 5; i++) {
+            queue.schedule(retryingTask().getId(), 0);
+        }
+        // Broker unreachable: no send is ever acked
+        when(kafkaTemplate.send(eq(RetryQueue.RETRY_TOPIC), anyString(), any(byte[].class)))
+                .thenReturn(new SettableListenableFuture<>());
+
+        long start = System.nanoTime();
+        assertEquals(5, queue.publishBatch());
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMs < 15_000, "batch waited " + elapsedMs + "ms, not 10s per send");
+        assertEquals(5, queue.size(), "unacked retries stay claimed");
+    }
+
+    @Test
+    void testCancelledTaskIsDroppedInsteadOfRetried() {
+        Task task = retryingTask();
+        RetryQueue queue = newQueue(30_000);
+        queue.schedule(task.getId(), 0);
+        assertTrue(taskService.cancelTask(task.getId()));
+
+        queue.publishDue();
+
+        verify(kafkaTemplate, never()).send(eq(RetryQueue.RETRY_TOPIC), anyString(), any(byte[].class));
+        assertEquals(0, queue.size());
+    }
+
+    private RetryQueue newQueue(long visibilityTimeoutMs) {
+        return new RetryQueue(redisTemplate, kafkaTemplate, taskService, taskCodec, 500, visibilityTimeoutMs);
+    }
+
+    private Task retryingTask() {
+        Task task = taskService.submitTask("EMAIL_SEND", Map.of("recipient", "a@example.com"), Task.Priority.NORMAL);
+        task.setStatus(Task.TaskStatus.RETRYING);
+        task.setRetryCount(1);
+        taskService.updateTask(task);
+        return task;
+    }
+}
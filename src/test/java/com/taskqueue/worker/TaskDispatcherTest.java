@@ -0,0 +1,286 @@
+package com.taskqueue.worker;
+
+import com.taskqueue.Task;
+import com.taskqueue.TaskQueueApplication;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TaskDispatcherTest {
+
+    private static final int CONCURRENCY = 4;
+
+    private ExecutorService pool;
+    private KafkaListenerEndpointRegistry registry;
+    private final Map<Task.Priority, MessageListenerContainer> containers = new EnumMap<>(Task.Priority.class);
+    private MessageListenerContainer retryContainer;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ThreadPoolExecutor(CONCURRENCY, CONCURRENCY, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(CONCURRENCY));
+        registry = mock(KafkaListenerEndpointRegistry.class);
+        for (Task.Priority priority : Task.Priority.values()) {
+            MessageListenerContainer container = mock(MessageListenerContainer.class);
+            containers.put(priority, container);
+            when(registry.getListenerContainer(TaskDispatcher.listenerId(priority))).thenReturn(container);
+        }
+        retryContainer = mock(MessageListenerContainer.class);
+        when(registry.getListenerContainer(TaskDispatcher.RETRY_LISTENER_ID)).thenReturn(retryContainer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void testUrgentTailLatencyStaysFlatUnderLowFlood() throws Exception {
+        TaskDispatcher dispatcher = new TaskDispatcher(pool, registry, CONCURRENCY, 30_000, 0, 10_000);
+        dispatcher.start();
+        try {
+            int lowTasks = 600;
+            int urgentTasks = 40;
+            CountDownLatch done = new CountDownLatch(lowTasks + urgentTasks);
+            List<Long> lowWaits    = Collections.synchronizedList(new ArrayList<>());
+            List<Long> urgentWaits = Collections.synchronizedList(new ArrayList<>());
+
+            for (int i = 0; i < lowTasks; i++) {
+                dispatcher.dispatch(task(Task.Priority.LOW), timed(lowWaits, done, 5));
+            }
+            // URGENT arrivals spread over the flood: early, middle and late in the LOW backlog
+            for (int i = 0; i < urgentTasks; i++) {
+                dispatcher.dispatch(task(Task.Priority.URGENT), timed(urgentWaits, done, 5));
+                Thread.sleep(15);
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+
+            long urgentP99 = percentile(urgentWaits, 0.99);
+            long lowP99    = percentile(lowWaits, 0.99);
+            assertTrue(urgentP99 < 100, "URGENT p99 wait " + urgentP99 + "ms under LOW flood");
+            assertTrue(lowP99 > 5 * urgentP99, "LOW p99 " + lowP99 + "ms should dwarf URGENT p99 " + urgentP99 + "ms");
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    void testAgingPromotesLongWaitingLowTask() {
+        long agingMs = 1000;
+        TaskDispatcher.QueuedTask low    = new TaskDispatcher.QueuedTask(Task.Priority.LOW, 0 - agingMs, 1, () -> {});
+        TaskDispatcher.QueuedTask urgent = new TaskDispatcher.QueuedTask(Task.Priority.URGENT, 2_999 - 4 * agingMs, 2, () -> {});
+        TaskDispatcher.QueuedTask later  = new TaskDispatcher.QueuedTask(Task.Priority.URGENT, 3_001 - 4 * agingMs, 3, () -> {});
+
+        assertTrue(TaskDispatcher.ORDER.compare(urgent, low) < 0, "URGENT queued within 3 aging steps goes first");
+        assertTrue(TaskDispatcher.ORDER.compare(low, later) < 0, "LOW waiting over 3 aging steps goes first");
+    }
+
+    @Test
+    void testLowerPriorityListenersPausedWhileHigherBacklogFillsSlots() throws Exception {
+        TaskDispatcher dispatcher = new TaskDispatcher(pool, registry, 2, 30_000, 0, 100);
+        dispatcher.start();
+        CountDownLatch running = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // Occupy both slots so later tasks stay queued and the backlog is deterministic
+            for (int i = 0; i < 2; i++) {
+                dispatcher.dispatch(task(Task.Priority.NORMAL), () -> {
+                    running.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            clearInvocations(containers.values().toArray());
+
+            dispatcher.dispatch(task(Task.Priority.HIGH), () -> {});
+            verify(containers.get(Task.Priority.LOW), never()).pause();
+
+            dispatcher.dispatch(task(Task.Priority.HIGH), () -> {});
+            verify(containers.get(Task.Priority.LOW)).pause();
+            verify(containers.get(Task.Priority.NORMAL)).pause();
+            verify(containers.get(Task.Priority.HIGH), never()).pause();
+            verify(containers.get(Task.Priority.URGENT), never()).pause();
+            verify(retryContainer, never()).pause();
+        } finally {
+            release.countDown();
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    void testPriorityGateActsBelowSaturationWhenSlotsOutnumberTheBacklog() throws Exception {
+        // Virtual-thread sizing: 1000 slots, backlog capped at 100. Hand-offs are held, never run
+        TaskDispatcher dispatcher = new TaskDispatcher(command -> {}, registry, 1000, 30_000, 0, 100);
+        dispatcher.start();
+        try {
+            for (int i = 0; i < 1000; i++) {
+                dispatcher.dispatch(task(Task.Priority.LOW), () -> {});
+            }
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (dispatcher.getActive() < 1000 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1000, dispatcher.getActive());
+            clearInvocations(containers.values().toArray());
+            clearInvocations(retryContainer);
+
+            for (int i = 0; i < 50; i++) {
+                dispatcher.dispatch(task(Task.Priority.HIGH), () -> {});
+            }
+            verify(containers.get(Task.Priority.LOW)).pause();
+            verify(containers.get(Task.Priority.NORMAL)).pause();
+            verify(containers.get(Task.Priority.HIGH), never()).pause();
+            verify(retryContainer, never()).pause();
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    void testAllListenersPausedWhileSaturatedAndResumedOnceDrained() throws Exception {
+        TaskDispatcher dispatcher = new TaskDispatcher(pool, registry, 2, 30_000, 100, 6);
+        dispatcher.start();
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(8);
+            Runnable blocked = () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            };
+            // 2 occupy the slots, 6 wait — the sixth waiting task hits maxBacklog
+            for (int i = 0; i < 8; i++) {
+                assertEquals(TaskDispatcher.Admission.ACCEPTED, dispatcher.dispatch(task(Task.Priority.NORMAL), blocked));
+            }
+            for (MessageListenerContainer container : containers.values()) {
+                verify(container, timeout(1000)).pause();
+            }
+            verify(retryContainer, timeout(1000)).pause();
+
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            for (MessageListenerContainer container : containers.values()) {
+                verify(container, timeout(1000)).resume();
+            }
+            verify(retryContainer, timeout(1000)).resume();
+            assertEquals(0, dispatcher.getBacklog());
+        } finally {
+            dispatcher.stop();
+        }
+        assertEquals(TaskDispatcher.Admission.STOPPED, dispatcher.dispatch(task(Task.Priority.NORMAL), () -> {}),
+                "stopped dispatcher must not admit");
+    }
+
+    @Test
+    void testSlowTypeAtItsLimitLeavesSlotsToOtherTypes() throws Exception {
+        TaskDispatcher dispatcher = new TaskDispatcher(pool, registry, CONCURRENCY, 30_000, 0, 100,
+                List.of(new TaskDispatcher.Bulkhead("SLOW", 2, 3), new TaskDispatcher.Bulkhead("FAST", 0, 0)));
+        dispatcher.start();
+        CountDownLatch slowRunning = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            Runnable slow = () -> {
+                slowRunning.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+            // Two run, three wait, the sixth overflows its queue
+            for (int i = 0; i < 5; i++) {
+                assertEquals(TaskDispatcher.Admission.ACCEPTED, dispatcher.dispatch(task("SLOW", Task.Priority.URGENT), slow));
+                if (i == 1) assertTrue(slowRunning.await(5, TimeUnit.SECONDS));
+            }
+            assertEquals(TaskDispatcher.Admission.FULL, dispatcher.dispatch(task("SLOW", Task.Priority.URGENT), slow));
+
+            // URGENT SLOW work is queued ahead, yet LOW FAST tasks still get the free slots
+            CountDownLatch fastDone = new CountDownLatch(10);
+            for (int i = 0; i < 10; i++) {
+                dispatcher.dispatch(task("FAST", Task.Priority.LOW), fastDone::countDown);
+            }
+            assertTrue(fastDone.await(5, TimeUnit.SECONDS));
+            assertEquals(3, dispatcher.getBacklog(Task.Priority.URGENT));
+            // SLOW can fill no more than its two slots, so it does not gate the lower priorities
+            verify(containers.get(Task.Priority.LOW), never()).pause();
+        } finally {
+            release.countDown();
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    void testPlatformExecutorNeverRejectsWithinTheSlotLimit() throws Exception {
+        Executor taskExecutor = new TaskQueueApplication().taskExecutor("platform", 2);
+        TaskDispatcher dispatcher = new TaskDispatcher(taskExecutor, registry, 2, 30_000, 0, 10_000);
+        dispatcher.start();
+        try {
+            // Short tasks back to back: a slot frees up just before its pool thread is idle again
+            int tasks = 5_000;
+            CountDownLatch done = new CountDownLatch(tasks);
+            for (int i = 0; i < tasks; i++) {
+                dispatcher.dispatch(task(Task.Priority.NORMAL), done::countDown);
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            assertEquals(0, dispatcher.getRejected());
+        } finally {
+            dispatcher.stop();
+            ((ThreadPoolTaskExecutor) taskExecutor).shutdown();
+        }
+    }
+
+    private static Task task(Task.Priority priority) {
+        Task task = new Task();
+        task.setPriority(priority);
+        return task;
+    }
+
+    private static Task task(String type, Task.Priority priority) {
+        Task task = task(priority);
+        task.setType(type);
+        return task;
+    }
+
+    private static Runnable timed(List<Long> waits, CountDownLatch done, long workMs) {
+        long enqueuedAt = System.nanoTime();
+        return () -> {
+            waits.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enqueuedAt));
+            try {
+                Thread.sleep(workMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        };
+    }
+
+    private static long percentile(List<Long> values, double p) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get((int) Math.ceil(p * sorted.size()) - 1);
+    }
+}
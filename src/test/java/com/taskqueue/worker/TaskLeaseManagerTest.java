@@ -0,0 +1,151 @@
+package com.taskqueue.worker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.taskqueue.EmbeddedRedisSupport;
+import com.taskqueue.Task;
+import com.taskqueue.codec.FormatDetectingTaskCodec;
+import com.taskqueue.codec.TaskCodec;
+import com.taskqueue.service.TaskService;
+import com.taskqueue.service.TaskUpdatePublisher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.taskqueue.service.TaskServiceSupport.newTaskService;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TaskLeaseManagerTest extends EmbeddedRedisSupport {
+
+    private static final long LEASE_MS = 300;
+
+    private TaskService taskService;
+    private TaskCodec taskCodec;
+    private RetryQueue retryQueue;
+    private ExecutorService pool;
+    private TaskDispatcher dispatcher;
+    private TaskUpdateBuffer updates;
+    private final CountDownLatch hang = new CountDownLatch(1);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        taskCodec = FormatDetectingTaskCodec.forFormat(FormatDetectingTaskCodec.BINARY, objectMapper);
+        KafkaTemplate<String, byte[]> kafkaTemplate = mock(KafkaTemplate.class);
+        taskService = newTaskService(kafkaTemplate, redisTemplate, objectMapper, taskCodec);
+        retryQueue = new RetryQueue(redisTemplate, kafkaTemplate, taskService, taskCodec, 500, 30_000);
+        pool = Executors.newCachedThreadPool();
+        dispatcher = new TaskDispatcher(pool, mock(KafkaListenerEndpointRegistry.class), 4, 30_000, 0, 100);
+        dispatcher.start();
+        updates = new TaskUpdateBuffer(taskService, mock(TaskUpdatePublisher.class), 5, 200, 2000);
+        updates.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.stop();
+        updates.stop();
+        pool.shutdownNow();
+    }
+
+    @Test
+    void testTaskOfKilledWorkerIsRecoveredByAnotherNode() throws Exception {
+        TaskLeaseManager deadNodeLeases = newLeases();
+        TaskWorker doomed = newWorker(deadNodeLeases);
+        Task task = taskService.submitTask("GENERIC", Map.of("n", 1), Task.Priority.NORMAL);
+
+        doomed.processTask(taskCodec.encode(task), mock(Acknowledgment.class));
+        Task running = awaitStatus(task.getId(), Task.TaskStatus.PROCESSING);
+
+        // While the node is alive its renewals keep the lease past its original expiry
+        TaskLeaseManager survivor = newLeases();
+        Thread.sleep(LEASE_MS / 2);
+        deadNodeLeases.renewAll();
+        Thread.sleep(LEASE_MS / 2 + 50);
+        survivor.reapExpired();
+        assertEquals(Task.TaskStatus.PROCESSING, taskService.getTask(task.getId()).getStatus());
+
+        // Kill: the node stops renewing with the task still mid-execution
+        Thread.sleep(LEASE_MS + 50);
+        survivor.reapExpired();
+
+        Task recovered = taskService.getTask(task.getId());
+        assertEquals(Task.TaskStatus.RETRYING, recovered.getStatus());
+        assertEquals(1, recovered.getRetryCount());
+        assertTrue(recovered.getError().contains(running.getWorkerId()), recovered.getError());
+        assertEquals(1, retryQueue.size());
+        assertEquals(0L, redisTemplate.opsForZSet().zCard("tasks:leases"));
+    }
+
+    @Test
+    void testAdmittedButUnstartedTaskIsReenqueuedUnchanged() throws Exception {
+        Task task = taskService.submitTask("GENERIC", Map.of("n", 1), Task.Priority.NORMAL);
+        newLeases().acquire(task.getId()); // admitted to a dispatcher that then died
+
+        Thread.sleep(LEASE_MS + 50);
+        newLeases().reapExpired();
+
+        Task recovered = taskService.getTask(task.getId());
+        assertEquals(Task.TaskStatus.PENDING, recovered.getStatus());
+        assertEquals(0, recovered.getRetryCount());
+        assertEquals(1, retryQueue.size());
+    }
+
+    @Test
+    void testFinishedTaskReleasesItsLease() throws Exception {
+        TaskWorker worker = newWorker(newLeases());
+        Task task = taskService.submitTask("GENERIC", Map.of("n", 1), Task.Priority.NORMAL);
+
+        worker.processTask(taskCodec.encode(task), mock(Acknowledgment.class));
+        awaitStatus(task.getId(), Task.TaskStatus.PROCESSING);
+        assertEquals(1L, redisTemplate.opsForZSet().zCard("tasks:leases"));
+        hang.countDown();
+        awaitStatus(task.getId(), Task.TaskStatus.COMPLETED);
+
+        // The lease is released after the final state is written, so it may trail COMPLETED briefly
+        for (int i = 0; i < 200 && redisTemplate.opsForZSet().zCard("tasks:leases") > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0L, redisTemplate.opsForZSet().zCard("tasks:leases"));
+    }
+
+    private TaskLeaseManager newLeases() {
+        return new TaskLeaseManager(redisTemplate, taskService, retryQueue, LEASE_MS, LEASE_MS / 3, LEASE_MS / 5);
+    }
+
+    private TaskWorker newWorker(TaskLeaseManager leases) {
+        TaskProcessor hanging = new TaskProcessor() {
+            public String getType() { return "GENERIC"; }
+            public String process(Map<String, Object> payload) throws Exception {
+                hang.await();
+                return "done";
+            }
+        };
+        TaskWorker worker = new TaskWorker(taskService, taskCodec, updates,
+                dispatcher, retryQueue, leases, List.of(hanging));
+        worker.init();
+        return worker;
+    }
+
+    private Task awaitStatus(String id, Task.TaskStatus status) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            Task task = taskService.getTask(id);
+            if (task != null && task.getStatus() == status) return task;
+            Thread.sleep(10);
+        }
+        fail("task " + id + " never reached " + status);
+        return null;
+    }
+}
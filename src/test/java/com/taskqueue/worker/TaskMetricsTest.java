@@ -0,0 +1,88 @@
+package com.taskqueue.worker;
+
+import com.taskqueue.Task;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class TaskMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void testMetersArePreRegisteredAndRecordedByProcessorAndPriority() {
+        TaskProcessor email = processor("EMAIL");
+        TaskMetrics metrics = new TaskMetrics(registry, List.of(email, processor("GENERIC")));
+        int priorities = Task.Priority.values().length;
+        assertEquals(2 * (2 * priorities + 4), registry.getMeters().size(), "all series exist before any task runs");
+
+        TaskMetrics.ProcessorMeters meters = metrics.of(email);
+        meters.recordQueueWait(Task.Priority.HIGH, 40);
+        meters.recordAttempt(Task.Priority.HIGH, 120, Task.TaskStatus.COMPLETED);
+        meters.recordAttempt(Task.Priority.HIGH, 80, Task.TaskStatus.RETRYING);
+        meters.recordAttempt(Task.Priority.LOW, 10, Task.TaskStatus.FAILED);
+
+        assertEquals(1, registry.get(TaskMetrics.QUEUE_WAIT).tags("type", "EMAIL", "priority", "HIGH").timer().count());
+        assertEquals(40, registry.get(TaskMetrics.QUEUE_WAIT).tags("type", "EMAIL", "priority", "HIGH").timer()
+                .totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(2, registry.get(TaskMetrics.EXECUTION).tags("type", "EMAIL", "priority", "HIGH").timer().count());
+        assertEquals(1, registry.get(TaskMetrics.EXECUTION).tags("type", "EMAIL", "priority", "LOW").timer().count());
+        assertEquals(0, registry.get(TaskMetrics.EXECUTION).tags("type", "GENERIC", "priority", "HIGH").timer().count());
+        for (String outcome : new String[] {"completed", "retried", "failed"}) {
+            assertEquals(1, registry.get(TaskMetrics.OUTCOMES).tags("processor", "EMAIL", "outcome", outcome)
+                    .counter().count(), 0.001, outcome);
+        }
+    }
+
+    @Test
+    void testDispatcherGaugesTrackActiveAndQueuedWork() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        TaskDispatcher dispatcher = new TaskDispatcher(pool, mock(KafkaListenerEndpointRegistry.class), 2, 30_000, 0, 100);
+        new TaskMetrics(registry, List.of(processor("GENERIC")), dispatcher);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+        dispatcher.start();
+        try {
+            for (int i = 0; i < 5; i++) {
+                Task task = new Task();
+                task.setPriority(i < 2 ? Task.Priority.URGENT : Task.Priority.LOW);
+                dispatcher.dispatch(task, () -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            assertEquals(2, registry.get("task.dispatcher.active").gauge().value());
+            assertEquals(2, registry.get("task.dispatcher.concurrency").gauge().value());
+            assertEquals(3, registry.get("task.dispatcher.backlog").tag("priority", "LOW").gauge().value());
+            assertEquals(0, registry.get("task.dispatcher.backlog").tag("priority", "URGENT").gauge().value());
+            assertEquals(0, registry.get("task.dispatcher.rejected").functionCounter().count());
+        } finally {
+            release.countDown();
+            dispatcher.stop();
+            pool.shutdownNow();
+        }
+    }
+
+    private static TaskProcessor processor(String type) {
+        return new TaskProcessor() {
+            public String getType() { return type; }
+            public String process(Map<String, Object> payload) { return "done"; }
+        };
+    }
+}
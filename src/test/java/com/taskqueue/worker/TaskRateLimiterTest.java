@@ -0,0 +1,63 @@
+package com.taskqueue.worker;
+
+import com.taskqueue.EmbeddedRedisSupport;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskRateLimiterTest extends EmbeddedRedisSupport {
+
+    @Test
+    void testNodesShareOneBucketPerType() throws Exception {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("task.rate-limit.EMAIL_SEND.per-second", "2")
+                .withProperty("task.rate-limit.EMAIL_SEND.burst", "5");
+        TaskRateLimiter nodeA = newLimiter(environment);
+        TaskRateLimiter nodeB = newLimiter(environment);
+
+        // The burst is shared: five tokens across both nodes, then a wait of up to 1/rate
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, (i % 2 == 0 ? nodeA : nodeB).acquire("EMAIL_SEND"));
+        }
+        long wait = nodeB.acquire("EMAIL_SEND");
+        assertTrue(wait > 0 && wait <= 500, "wait " + wait + "ms for the next token");
+        assertEquals(0, nodeA.acquire("GENERIC"), "a type without a limit is never throttled");
+
+        Thread.sleep(wait + 20);
+        assertEquals(0, nodeA.acquire("EMAIL_SEND"), "the bucket refills at the configured rate");
+    }
+
+    @Test
+    void testRuntimeLimitAppliesOnEveryNodeUntilCleared() {
+        TaskRateLimiter nodeA = newLimiter(new MockEnvironment());
+        TaskRateLimiter nodeB = newLimiter(new MockEnvironment());
+
+        nodeA.setLimit("GENERIC", 1, 2);
+        nodeB.refreshOverrides(); // GENERIC is unlimited by config, so B learns of it on refresh
+        assertEquals(0, nodeB.acquire("GENERIC"));
+        assertEquals(0, nodeA.acquire("GENERIC"));
+        assertTrue(nodeB.acquire("GENERIC") > 0);
+
+        Map<String, Object> limit = nodeB.getLimits().get("GENERIC");
+        assertEquals(1.0, limit.get("perSecond"));
+        assertEquals(true, limit.get("runtime"));
+
+        nodeA.clearLimit("GENERIC");
+        assertEquals(0, nodeB.acquire("GENERIC"), "back on the configured (unlimited) rate");
+    }
+
+    private static TaskRateLimiter newLimiter(MockEnvironment environment) {
+        return new TaskRateLimiter(redisTemplate, List.of(processor("EMAIL_SEND"), processor("GENERIC")), environment);
+    }
+
+    private static TaskProcessor processor(String type) {
+        return new TaskProcessor() {
+            public String getType() { return type; }
+            public String process(Map<String, Object> payload) { return "ok"; }
+        };
+    }
+}
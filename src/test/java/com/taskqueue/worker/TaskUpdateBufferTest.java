@@ -0,0 +1,128 @@
+package com.taskqueue.worker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.taskqueue.EmbeddedRedisSupport;
+import com.taskqueue.Task;
+import com.taskqueue.codec.FormatDetectingTaskCodec;
+import com.taskqueue.model.TaskField;
+import com.taskqueue.service.TaskService;
+import com.taskqueue.service.TaskUpdatePublisher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.taskqueue.service.TaskServiceSupport.newTaskService;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TaskUpdateBufferTest extends EmbeddedRedisSupport {
+
+    private TaskService taskService;
+    private TaskUpdatePublisher publisher;
+    private TaskUpdateBuffer updates;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        taskService = spy(newTaskService(mock(KafkaTemplate.class), redisTemplate, objectMapper,
+                FormatDetectingTaskCodec.forFormat(FormatDetectingTaskCodec.BINARY, objectMapper)));
+        publisher = mock(TaskUpdatePublisher.class);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        updates.stop();
+    }
+
+    @Test
+    void testUpdatesToOneTaskAreCoalescedIntoOneWriteAndDelta() throws Exception {
+        updates = start(60_000, 2);
+        Task task = taskService.submitTask("GENERIC", Map.of("n", 1), Task.Priority.NORMAL);
+
+        task.setStatus(Task.TaskStatus.PROCESSING);
+        task.setWorkerId("worker-1");
+        task.setStartedAt(LocalDateTime.now());
+        CompletableFuture<Void> started = updates.stage(task, TaskField.STATUS, TaskField.WORKER_ID, TaskField.STARTED_AT);
+        task.setStatus(Task.TaskStatus.COMPLETED);
+        task.setResult("done");
+        CompletableFuture<Void> completed = updates.stage(task, TaskField.STATUS, TaskField.RESULT);
+        updates.setWorkerStatus("worker-1", "ACTIVE");
+
+        assertSame(started, completed);
+        assertEquals(1, updates.getPending());
+        assertEquals(Task.TaskStatus.PENDING, taskService.getTask(task.getId()).getStatus());
+
+        // A second task fills the batch and triggers the flush
+        Task other = taskService.submitTask("GENERIC", Map.of("n", 2), Task.Priority.NORMAL);
+        other.setStatus(Task.TaskStatus.PROCESSING);
+        updates.stage(other, TaskField.STATUS).get(5, TimeUnit.SECONDS);
+        completed.get(5, TimeUnit.SECONDS);
+
+        Task stored = taskService.getTask(task.getId());
+        assertEquals(Task.TaskStatus.COMPLETED, stored.getStatus());
+        assertEquals("worker-1", stored.getWorkerId());
+        assertEquals("done", stored.getResult());
+        assertEquals(1L, taskService.getTaskStatistics().get("completed"));
+        assertNotNull(redisTemplate.opsForValue().get("worker:worker-1"));
+        verify(taskService, times(1)).updateTasks(anyList(), anyList(), eq("worker-1"), eq("ACTIVE"));
+
+        ArgumentCaptor<Task> pushed = ArgumentCaptor.forClass(Task.class);
+        verify(publisher, times(2)).publish(pushed.capture(), any());
+        assertEquals(Task.TaskStatus.COMPLETED, pushed.getAllValues().get(0).getStatus());
+        verify(publisher).publish(any(), eq(EnumSet.of(TaskField.STATUS, TaskField.WORKER_ID, TaskField.STARTED_AT, TaskField.RESULT)));
+    }
+
+    @Test
+    void testFlushesAfterIntervalAndOnStop() throws Exception {
+        updates = start(10, 200);
+        Task task = taskService.submitTask("GENERIC", Map.of(), Task.Priority.NORMAL);
+        task.setStatus(Task.TaskStatus.PROCESSING);
+        updates.stage(task, TaskField.STATUS).get(5, TimeUnit.SECONDS);
+        assertEquals(Task.TaskStatus.PROCESSING, taskService.getTask(task.getId()).getStatus());
+
+        TaskUpdateBuffer idle = start(60_000, 200);
+        task.setStatus(Task.TaskStatus.FAILED);
+        task.setError("boom");
+        CompletableFuture<Void> failed = idle.stage(task, TaskField.STATUS, TaskField.ERROR);
+        idle.stop();
+
+        assertTrue(failed.isDone());
+        assertEquals("boom", taskService.getTask(task.getId()).getError());
+        // After stop every update is written through
+        task.setStatus(Task.TaskStatus.CANCELLED);
+        assertTrue(idle.stage(task, TaskField.STATUS).isDone());
+        assertEquals(Task.TaskStatus.CANCELLED, taskService.getTask(task.getId()).getStatus());
+    }
+
+    @Test
+    void testFailedFlushCompletesExceptionally() throws Exception {
+        updates = start(1, 200);
+        doThrow(new IllegalStateException("redis down")).when(taskService)
+                .updateTasks(anyList(), anyList(), any(), any());
+        Task task = taskService.submitTask("GENERIC", Map.of(), Task.Priority.NORMAL);
+        task.setStatus(Task.TaskStatus.COMPLETED);
+
+        CompletableFuture<Void> written = updates.stage(task, TaskField.STATUS);
+
+        Exception e = assertThrows(Exception.class, () -> written.get(5, TimeUnit.SECONDS));
+        assertEquals("redis down", e.getCause().getMessage());
+        verifyNoInteractions(publisher);
+    }
+
+    private TaskUpdateBuffer start(long flushIntervalMs, int batchSize) {
+        TaskUpdateBuffer buffer = new TaskUpdateBuffer(taskService, publisher, flushIntervalMs, batchSize, 1000);
+        buffer.start();
+        return buffer;
+    }
+}
@@ -0,0 +1,118 @@
+package com.taskqueue.worker;
+
+import com.taskqueue.Task;
+import com.taskqueue.worker.processors.GenericTaskProcessor;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Worker overhead around the processors: the processor lookup, and a batch of tasks pushed
+ * through TaskDispatcher onto a 20-thread hand-off pool (the default platform executor).
+ * Processors return at once, so dispatch is all that is measured; divide by tasks for the
+ * cost per task. Redis writes are left to TaskServiceBenchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskWorkerBenchmark {
+
+    private static final String[] TYPES = {"EMAIL_SEND", "IMAGE_PROCESS", "REPORT_GENERATE", "DATA_EXPORT", "UNKNOWN"};
+    private static final int POOL_SIZE = 20;
+
+    @Param({"2", "50"})
+    private int payloadFields;
+
+    @Param({"100", "10000"})
+    private int tasks;
+
+    private TaskWorker worker;
+    private ExecutorService pool;
+    private TaskDispatcher dispatcher;
+    private List<Task> batch;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<TaskProcessor> processors = new ArrayList<>();
+        for (String type : new String[] {"EMAIL_SEND", "IMAGE_PROCESS", "REPORT_GENERATE", "DATA_EXPORT",
+                GenericTaskProcessor.GENERIC_TYPE}) {
+            processors.add(processor(type));
+        }
+        // Only the processor registry is exercised — no Redis, Kafka or leases behind it
+        worker = new TaskWorker(null, null, null, null, null, null, processors);
+
+        pool = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 0, TimeUnit.SECONDS, new SynchronousQueue<>());
+        dispatcher = new TaskDispatcher(pool, mock(KafkaListenerEndpointRegistry.class), POOL_SIZE, 30_000, 0, Integer.MAX_VALUE);
+        dispatcher.start();
+
+        Task.Priority[] priorities = Task.Priority.values();
+        batch = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            Task task = new Task();
+            task.setId("task-" + i);
+            task.setType(TYPES[i % TYPES.length]);
+            task.setPriority(priorities[i % priorities.length]);
+            task.setPayload(payload(payloadFields));
+            batch.add(task);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dispatcher.stop();
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public TaskProcessor lookup() {
+        next = (next + 1) % TYPES.length;
+        return worker.processorFor(TYPES[next]);
+    }
+
+    @Benchmark
+    public void dispatch() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(tasks);
+        for (Task task : batch) {
+            dispatcher.dispatch(task, () -> {
+                try {
+                    worker.processorFor(task.getType()).process(task.getPayload());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+
+    private static TaskProcessor processor(String type) {
+        return new TaskProcessor() {
+            public String getType() { return type; }
+            public String process(Map<String, Object> payload) { return type + ":" + payload.size(); }
+        };
+    }
+
+    private static Map<String, Object> payload(int fields) {
+        Map<String, Object> payload = new HashMap<>();
+        for (int i = 0; i < fields; i++) {
+            payload.put("field" + i, "value-" + i);
+        }
+        return payload;
+    }
+}